@@ -0,0 +1,80 @@
+package com.agilesphere;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import static com.agilesphere.rules.Rules.LUCK_RULE;
+
+/**
+ * Compares decoding the binary encoding of a range to the UTF-8 output
+ * with regenerating the same output, both discarding the bytes, and
+ * measures encoding.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BinaryFormatBenchmark {
+
+    private static final OutputStream DISCARD = new OutputStream() {
+
+        @Override
+        public void write(int b) {}
+
+        @Override
+        public void write(byte[] b, int off, int len) {}
+    };
+
+    @Param({"10000", "1000000"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean luck;
+
+    private FizzBuzz fizzBuzz;
+    private byte[] encoding;
+
+    @Setup
+    public void setUp() throws IOException {
+        FizzBuzz.Builder builder = new FizzBuzz.Builder().to(size).withStatistics();
+        if (luck) builder.withOverrideRule(LUCK_RULE);
+        fizzBuzz = builder.build();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        fizzBuzz.writeBinaryTo(out);
+        encoding = out.toByteArray();
+    }
+
+    @Benchmark
+    public void regenerate() throws IOException {
+        fizzBuzz.writeTo(DISCARD);
+    }
+
+    @Benchmark
+    public void decode() throws IOException {
+        FizzBuzz.decodeBinary(new ByteArrayInputStream(encoding), DISCARD);
+    }
+
+    @Benchmark
+    public int encode() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        fizzBuzz.writeBinaryTo(out);
+        return out.size();
+    }
+}
@@ -0,0 +1,53 @@
+package com.agilesphere;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.agilesphere.rules.Rules.LUCK_RULE;
+
+/**
+ * Measures generating the full output of a new FizzBuzz instance
+ * across range sizes, with and without the luck rule and statistics.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class FizzBuzzBenchmark {
+
+    @Param({"100", "10000", "1000000", "100000000"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean luck;
+
+    @Param({"false", "true"})
+    public boolean statistics;
+
+    private FizzBuzz.Builder builder;
+
+    @Setup
+    public void setUp() {
+        builder = new FizzBuzz.Builder().to(size);
+        if (luck) builder.withOverrideRule(LUCK_RULE);
+        if (statistics) builder.withStatistics();
+    }
+
+    @Benchmark
+    public String output() {
+        return builder.build().output();
+    }
+}
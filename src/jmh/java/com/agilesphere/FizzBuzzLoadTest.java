@@ -0,0 +1,130 @@
+package com.agilesphere;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.String.format;
+
+/**
+ * A closed loop load test client for {@link FizzBuzzServer}. Each thread
+ * sends requests over a kept alive connection one after another for the
+ * duration, reading every response in full, and the client then reports
+ * requests per second and latency percentiles.
+ *
+ *   FizzBuzzLoadTest [--url url] [--threads threads] [--seconds seconds]
+ *
+ * Without a url a server is started in process on a free port and
+ * requests ask for 10000 values with the luck rule and statistics.
+ */
+public class FizzBuzzLoadTest {
+
+    private static final String DEFAULT_QUERY = "?to=10000&luck=true&stats=true";
+
+    public static void main(String[] args) throws Exception {
+        String url = null;
+        int threads = 4;
+        int seconds = 10;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--url")) url = args[i + 1];
+            else if (args[i].equals("--threads")) threads = Integer.parseInt(args[i + 1]);
+            else if (args[i].equals("--seconds")) seconds = Integer.parseInt(args[i + 1]);
+            else throw new IllegalArgumentException("Unknown option " + args[i]);
+        }
+        FizzBuzzServer server = null;
+        if (url == null) {
+            FizzBuzzServer.disableNagle();
+            server = FizzBuzzServer.start(0, Runtime.getRuntime().availableProcessors());
+            url = "http://localhost:" + server.address().getPort() + FizzBuzzServer.PATH + DEFAULT_QUERY;
+        }
+        try {
+            run(new URL(url), threads, TimeUnit.SECONDS.toNanos(seconds));
+        } finally {
+            if (server != null) server.close();
+        }
+    }
+
+    private static void run(URL url, int threads, long nanos) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long deadline = System.nanoTime() + nanos;
+        List<Future<Worker>> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(executor.submit(() -> new Worker(url).run(deadline)));
+        }
+        long[] latencies = new long[0];
+        long bytes = 0;
+        long failures = 0;
+        for (Future<Worker> future : workers) {
+            Worker worker = future.get();
+            int from = latencies.length;
+            latencies = Arrays.copyOf(latencies, from + worker.requests);
+            System.arraycopy(worker.latencies, 0, latencies, from, worker.requests);
+            bytes += worker.bytes;
+            failures += worker.failures;
+        }
+        executor.shutdown();
+        Arrays.sort(latencies);
+        double elapsed = nanos / 1e9;
+        System.out.println(format("%s with %d threads for %.0fs", url, threads, elapsed));
+        System.out.println(format("requests: %d, failures: %d, %.1f req/s, %.1f MB/s",
+                latencies.length, failures, latencies.length / elapsed, bytes / elapsed / 1e6));
+        System.out.println(format("latency p50: %.3f ms, p99: %.3f ms, max: %.3f ms",
+                percentile(latencies, 0.5), percentile(latencies, 0.99), percentile(latencies, 1.0)));
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(sorted.length * percentile) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private static final class Worker {
+
+        private final URL url;
+        private final byte[] buffer = new byte[8192];
+        private long[] latencies = new long[1024];
+        private int requests;
+        private long bytes;
+        private long failures;
+
+        private Worker(URL url) {
+            this.url = url;
+        }
+
+        private Worker run(long deadline) {
+            while (System.nanoTime() < deadline) {
+                long start = System.nanoTime();
+                try {
+                    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+                    boolean ok = connection.getResponseCode() == 200;
+                    InputStream in = ok ? connection.getInputStream() : connection.getErrorStream();
+                    try {
+                        for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                            bytes += read;
+                        }
+                    } finally {
+                        in.close();
+                    }
+                    if (!ok) {
+                        failures++;
+                        continue;
+                    }
+                } catch (IOException e) {
+                    failures++;
+                    continue;
+                }
+                if (requests == latencies.length) latencies = Arrays.copyOf(latencies, 2 * requests);
+                latencies[requests++] = System.nanoTime() - start;
+            }
+            return this;
+        }
+    }
+}
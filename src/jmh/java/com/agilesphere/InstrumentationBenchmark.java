@@ -0,0 +1,62 @@
+package com.agilesphere;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.agilesphere.rules.Rules.LUCK_RULE;
+
+/**
+ * Compares instances with and without instrumentation, converting
+ * single values and generating the output of a range.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstrumentationBenchmark {
+
+    private static final int VALUES = 10_000;
+
+    @Param({"false", "true"})
+    public boolean instrumented;
+
+    private FizzBuzz.Builder builder;
+    private FizzBuzz fizzBuzz;
+
+    @Setup
+    public void setUp() {
+        builder = new FizzBuzz.Builder().to(VALUES).withOverrideRule(LUCK_RULE).withStatistics();
+        if (instrumented) builder.withInstrumentation();
+        fizzBuzz = builder.build();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public int convert() {
+        int length = 0;
+        for (int value = 1; value <= VALUES; value++) {
+            length += fizzBuzz.tokenAt(value).length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public String output() {
+        return builder.build().output();
+    }
+}
@@ -0,0 +1,115 @@
+package com.agilesphere;
+
+import com.agilesphere.rules.LongRule;
+import com.agilesphere.rules.Rule;
+import com.agilesphere.rules.Rules;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntPredicate;
+
+import static com.agilesphere.rules.Rules.asLongRule;
+
+/**
+ * Compares evaluating override rules through a loop of interface calls
+ * with the compiled {@link RuleEvaluator}. The overrides mix digit rules
+ * in base 16, divisibility rules too large for the cycle table and custom
+ * rules, so the loop's call site sees several rule classes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuleEvaluatorBenchmark {
+
+    private static final int VALUES = 1024;
+
+    @Param({"1", "3", "10"})
+    public int overrides;
+
+    private LongRule[] rules;
+    private int[] indices;
+    private RuleEvaluator evaluator;
+
+    @Setup
+    public void setUp() {
+        rules = new LongRule[overrides];
+        indices = new int[overrides];
+        for (int i = 0; i < overrides; i++) {
+            rules[i] = asLongRule(override(i));
+            indices[i] = i;
+        }
+        evaluator = RuleEvaluator.compile(rules, indices);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public int ruleLoop() {
+        int sum = 0;
+        for (int value = 1; value <= VALUES; value++) {
+            int index = overrides;
+            for (int i = 0; i < rules.length; i++) {
+                if (rules[i].matches(value)) {
+                    index = indices[i];
+                    break;
+                }
+            }
+            sum += index;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public int compiled() {
+        int sum = 0;
+        for (int value = 1; value <= VALUES; value++) {
+            sum += evaluator.ruleIndex(value, overrides);
+        }
+        return sum;
+    }
+
+    private static Rule override(int i) {
+        switch (i % 3) {
+            case 0:
+                return Rules.containsDigit(i % 16, 16, "hex" + i);
+            case 1:
+                return Rules.divisibleBy(RuleTable.MAX_CYCLE + 1 + i, "large" + i);
+            default:
+                return custom(value -> value % 1000 == i, "custom" + i);
+        }
+    }
+
+    private static Rule custom(IntPredicate predicate, String result) {
+        return new Rule() {
+
+            @Override
+            public boolean matches(int value) {
+                return predicate.test(value);
+            }
+
+            @Override
+            public String result() {
+                return result;
+            }
+
+            @Override
+            public IntPredicate rule() {
+                return predicate;
+            }
+        };
+    }
+}
@@ -0,0 +1,83 @@
+package com.agilesphere;
+
+import com.agilesphere.rules.Rule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.agilesphere.rules.Rules.*;
+
+/**
+ * Measures each rule in {@link com.agilesphere.rules.Rules} on its
+ * own, and converting single values to their output tokens.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RulesBenchmark {
+
+    private static final int VALUES = 1024;
+    private static final int FROM = 1_000_000;
+
+    private FizzBuzz fizzBuzz;
+
+    @Setup
+    public void setUp() {
+        fizzBuzz = new FizzBuzz.Builder().from(FROM).to(FROM + VALUES).withOverrideRule(LUCK_RULE).build();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public int fizz() {
+        return matches(FIZZ_RULE);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public int buzz() {
+        return matches(BUZZ_RULE);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public int fizzBuzz() {
+        return matches(FIZZBUZZ_RULE);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public int luck() {
+        return matches(LUCK_RULE);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public int convert() {
+        int length = 0;
+        for (int value = FROM; value < FROM + VALUES; value++) {
+            length += fizzBuzz.tokenAt(value).length();
+        }
+        return length;
+    }
+
+    private static int matches(Rule rule) {
+        int matches = 0;
+        for (int value = FROM; value < FROM + VALUES; value++) {
+            if (rule.matches(value)) matches++;
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,83 @@
+package com.agilesphere;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.agilesphere.rules.Rules.LUCK_RULE;
+
+/**
+ * Measures 64 callers asking for the output of the same range at once,
+ * either sharing one new instance, which renders the output once, or
+ * each with an instance of its own, which is what sharing an instance
+ * cost when every concurrent caller rendered the output itself. Run on
+ * a single core the time per operation is the CPU time the callers use,
+ * and on more cores the CPU saved shows in the allocation per operation
+ * reported by the GC profiler.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SharedOutputBenchmark {
+
+    private static final int CALLERS = 64;
+
+    @Param({"10000", "100000"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean shared;
+
+    private FizzBuzz.Builder builder;
+    private ExecutorService executor;
+
+    @Setup
+    public void setUp() {
+        builder = new FizzBuzz.Builder().to(size).withOverrideRule(LUCK_RULE).withStatistics();
+        executor = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public int callers() throws Exception {
+        FizzBuzz instance = builder.build();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> callers = new ArrayList<>(CALLERS);
+        for (int i = 0; i < CALLERS; i++) {
+            callers.add(executor.submit(() -> {
+                start.await();
+                return (shared ? instance : builder.build()).output();
+            }));
+        }
+        start.countDown();
+        int length = 0;
+        for (Future<String> caller : callers) {
+            length += caller.get().length();
+        }
+        return length;
+    }
+}
@@ -0,0 +1,68 @@
+package com.agilesphere.rules;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntPredicate;
+
+import static com.agilesphere.utils.DigitSpliterator.base10Spliterator;
+import static java.util.stream.StreamSupport.intStream;
+
+/**
+ * Compares matching values against the luck rule using digit streams,
+ * as the rule was originally implemented, with the table driven
+ * {@link Rules#containsDigit(int, int, String)} rule.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContainsDigitRuleBenchmark {
+
+    private static final int VALUES = 1024;
+
+    private static final IntPredicate EQUALS_THREE = i -> i == 3;
+
+    @Param({"1", "100000", "1000000000"})
+    public int from;
+
+    private Rule rule;
+
+    @Setup
+    public void setUp() {
+        rule = Rules.containsDigit(3, 10, Rules.LUCK);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public int digitStream() {
+        int matches = 0;
+        for (int value = from; value < from + VALUES; value++) {
+            if (intStream(base10Spliterator(value), false).anyMatch(EQUALS_THREE)) matches++;
+        }
+        return matches;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(VALUES)
+    public int lookupTable() {
+        int matches = 0;
+        for (int value = from; value < from + VALUES; value++) {
+            if (rule.matches(value)) matches++;
+        }
+        return matches;
+    }
+}
@@ -0,0 +1,45 @@
+package com.agilesphere.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.agilesphere.utils.DigitSpliterator.base10Spliterator;
+import static java.util.stream.StreamSupport.intStream;
+
+/**
+ * Measures traversing the digits of values of increasing length,
+ * directly and through a digit stream.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DigitSpliteratorBenchmark {
+
+    @Param({"7", "12345", "1234567890", "1234567890123456789"})
+    public long value;
+
+    @Benchmark
+    public int forEachRemaining() {
+        int[] sum = new int[1];
+        base10Spliterator(value).forEachRemaining((int digit) -> sum[0] += digit);
+        return sum[0];
+    }
+
+    @Benchmark
+    public int stream() {
+        return intStream(base10Spliterator(value), false).sum();
+    }
+}
@@ -0,0 +1,210 @@
+package com.agilesphere;
+
+import com.agilesphere.rules.Rule;
+import com.google.common.primitives.Longs;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import static java.util.Comparator.comparingLong;
+
+/**
+ * Evaluates many queries together. Queries are grouped by their override
+ * rules so each rule configuration is compiled once, and within a group
+ * overlapping and adjacent ranges are merged so each distinct value is
+ * rendered once into shared text. Each query's output is a view over the
+ * shared text. While rendering, running rule counters are copied at the
+ * first and last value of every query, so the statistics of a query are
+ * the difference of two prefix sums rather than a count over its range.
+ */
+final class BatchEvaluator {
+
+    private BatchEvaluator() {}
+
+    /**
+     * Evaluates the queries.
+     * @param queries The queries.
+     * @return the output of each query in the order given
+     */
+    static List<CharSequence> evaluateAll(List<Query> queries) {
+        Map<List<Rule>, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < queries.size(); i++) {
+            groups.computeIfAbsent(queries.get(i).overrideRules(), rules -> new ArrayList<>()).add(i);
+        }
+        CharSequence[] outputs = new CharSequence[queries.size()];
+        groups.forEach((rules, group) -> evaluate(new RuleSet(FizzBuzz.precedenceOrder(rules)), queries, group, outputs));
+        return Collections.unmodifiableList(Arrays.asList(outputs));
+    }
+
+    private static void evaluate(RuleSet ruleSet, List<Query> queries, List<Integer> group, CharSequence[] outputs) {
+        group.sort(comparingLong(i -> queries.get(i).from()));
+        int start = 0;
+        while (start < group.size()) {
+            long mergedFrom = queries.get(group.get(start)).from();
+            long mergedTo = queries.get(group.get(start)).to();
+            int end = start + 1;
+            while (end < group.size() && queries.get(group.get(end)).from() - 1 <= mergedTo) {
+                mergedTo = Math.max(mergedTo, queries.get(group.get(end)).to());
+                end++;
+            }
+            evaluateMerged(ruleSet, queries, group.subList(start, end), mergedFrom, mergedTo, outputs);
+            start = end;
+        }
+    }
+
+    private static void evaluateMerged(RuleSet ruleSet, List<Query> queries, List<Integer> merged,
+                                       long from, long to, CharSequence[] outputs) {
+        TreeSet<Long> values = new TreeSet<>();
+        for (int i : merged) {
+            values.add(queries.get(i).from());
+            values.add(queries.get(i).to());
+        }
+        Statistics counters = ruleSet.newStatistics();
+        BoundarySink sink = new BoundarySink(ruleSet.results(), counters, Longs.toArray(values));
+        try {
+            ruleSet.render(from, to, sink, counters);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        String text = sink.text.toString();
+        for (int i : merged) {
+            Query query = queries.get(i);
+            int first = Arrays.binarySearch(sink.boundaries, query.from());
+            int last = Arrays.binarySearch(sink.boundaries, query.to());
+            String statistics = "";
+            if (query.includesStatistics()) {
+                Statistics counts = ruleSet.newStatistics();
+                long[] difference = sink.countsThrough[last].clone();
+                for (int index = 0; index < difference.length; index++) {
+                    difference[index] -= sink.countsBefore[first][index];
+                }
+                counts.add(difference);
+                statistics = FizzBuzz.LINE_SEPARATOR + counts.format();
+            }
+            outputs[i] = new TextView(text, sink.starts[first], sink.ends[last], statistics);
+        }
+    }
+
+    /**
+     * Appends tokens to shared text, noting the text offsets and running
+     * rule counters at the boundary values of the queries. The counters
+     * are the statistics that the rule set counts tokens in as it renders,
+     * which already include a value when its token arrives. Only tokens
+     * from {@link RuleSet#render} are taken, so encoded tokens and
+     * verbatim text are not supported.
+     */
+    private static final class BoundarySink implements TokenSink {
+
+        private final String[] results;
+        private final Statistics statistics;
+        private final long[] boundaries;
+        private final int[] starts;
+        private final int[] ends;
+        private final long[][] countsBefore;
+        private final long[][] countsThrough;
+        private final StringBuilder text = new StringBuilder();
+        private int next;
+        private boolean first = true;
+
+        private BoundarySink(String[] results, Statistics statistics, long[] boundaries) {
+            this.results = results;
+            this.statistics = statistics;
+            this.boundaries = boundaries;
+            this.starts = new int[boundaries.length];
+            this.ends = new int[boundaries.length];
+            this.countsBefore = new long[boundaries.length][];
+            this.countsThrough = new long[boundaries.length][];
+        }
+
+        @Override
+        public void token(int index, long value) {
+            if (first) {
+                first = false;
+            } else {
+                text.append(' ');
+            }
+            boolean boundary = next < boundaries.length && value == boundaries[next];
+            if (boundary) {
+                starts[next] = text.length();
+                countsThrough[next] = counts();
+                countsBefore[next] = countsThrough[next].clone();
+                countsBefore[next][index]--;
+            }
+            if (index == results.length) {
+                text.append(value);
+            } else {
+                text.append(results[index]);
+            }
+            if (boundary) {
+                ends[next] = text.length();
+                next++;
+            }
+        }
+
+        @Override
+        public void tokens(byte[] encoded) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void text(String text) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void flush() {}
+
+        private long[] counts() {
+            long[] counts = new long[statistics.size()];
+            for (int index = 0; index < counts.length; index++) {
+                counts[index] = statistics.count(index);
+            }
+            return counts;
+        }
+    }
+
+    /**
+     * A view of part of a shared text followed by a suffix.
+     */
+    private static final class TextView implements CharSequence {
+
+        private final String text;
+        private final int start;
+        private final int end;
+        private final String suffix;
+
+        private TextView(String text, int start, int end, String suffix) {
+            this.text = text;
+            this.start = start;
+            this.end = end;
+            this.suffix = suffix;
+        }
+
+        @Override
+        public int length() {
+            return end - start + suffix.length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (index < end - start) ? text.charAt(start + index) : suffix.charAt(index - (end - start));
+        }
+
+        @Override
+        public CharSequence subSequence(int from, int to) {
+            return toString().subSequence(from, to);
+        }
+
+        @Override
+        public String toString() {
+            return text.substring(start, end) + suffix;
+        }
+    }
+}
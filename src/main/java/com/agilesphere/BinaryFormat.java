@@ -0,0 +1,273 @@
+package com.agilesphere;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.PrimitiveIterator;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A compact binary encoding of FizzBuzz output. Numbers are not stored
+ * because they follow from their position, so the encoding holds only
+ * which rule wins each value:
+ *
+ *   header      magic, version, from, to, statistics flag and the
+ *               result of each rule in order of precedence as a
+ *               variable length byte count and its UTF-8 bytes
+ *   period      the cycle length and the rule index that the cycle
+ *               table selects for each residue, packed into as few
+ *               bits per residue as the rule count allows
+ *   exceptions  runs of consecutive values won by the same evaluated
+ *               rule instead of the periodic winner, each a gap from
+ *               the end of the previous run, a length and a rule
+ *               index, all as variable length integers, ending with
+ *               a run of length zero
+ *
+ * With only periodic rules the encoding is the same few dozen bytes
+ * whatever the range. Exceptions are found by stepping between the
+ * values that evaluated rules win, without walking the range. Decoding
+ * streams the range back to the exact text of the output, with
+ * statistics counted as it goes, without classifying any value.
+ */
+final class BinaryFormat {
+
+    static final int MAGIC = 0x465A425A;
+    static final int VERSION = 2;
+    static final int MAX_RULES = 1 << 16;
+    static final int MAX_RESULT_BYTES = 1 << 20;
+
+    private BinaryFormat() {}
+
+    /**
+     * Encodes the output of the rules over the range.
+     * @param ruleSet The rules.
+     * @param from The start value of the range.
+     * @param to The end value of the range.
+     * @param withStatistics Whether the decoded output includes statistics.
+     * @param out The stream to write to, which is flushed but not closed.
+     * @throws IOException if the stream cannot be written to.
+     * @throws IllegalArgumentException if there are more than
+     *         {@link #MAX_RULES} rules or a result is longer than
+     *         {@link #MAX_RESULT_BYTES} in UTF-8.
+     */
+    static void encode(RuleSet ruleSet, long from, long to, boolean withStatistics, OutputStream out)
+            throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, FizzBuzz.BUFFER_SIZE));
+        String[] results = ruleSet.results();
+        RuleTable ruleTable = ruleSet.ruleTable();
+        checkArgument(results.length <= MAX_RULES, "Rules must be at most %s - rules(%s)", MAX_RULES, results.length);
+        byte[][] encodedResults = new byte[results.length][];
+        for (int i = 0; i < results.length; i++) {
+            encodedResults[i] = results[i].getBytes(UTF_8);
+            checkArgument(encodedResults[i].length <= MAX_RESULT_BYTES,
+                    "Results must be at most %s bytes - bytes(%s)", MAX_RESULT_BYTES, encodedResults[i].length);
+        }
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        data.writeLong(from);
+        data.writeLong(to);
+        data.writeBoolean(withStatistics);
+        writeVarLong(data, results.length);
+        for (byte[] result : encodedResults) {
+            writeVarLong(data, result.length);
+            data.write(result);
+        }
+        int bits = bitsPerIndex(results.length);
+        writeVarLong(data, ruleTable.cycle());
+        long packed = 0;
+        int filled = 0;
+        for (int residue = 0; residue < ruleTable.cycle(); residue++) {
+            packed |= (long) ruleTable.winner(residue) << filled;
+            filled += bits;
+            for (; filled >= 8; filled -= 8, packed >>>= 8) data.writeByte((int) packed);
+        }
+        if (filled > 0) data.writeByte((int) packed);
+        boolean[] evaluated = new boolean[results.length + 1];
+        for (int i = 0; i < results.length; i++) {
+            evaluated[i] = !ruleTable.isTabled(i);
+        }
+        PrimitiveIterator.OfLong exceptions = ruleSet.valuesWonBy(from, to, evaluated);
+        long previousEnd = from - 1;
+        long start = 0;
+        long length = 0;
+        int index = 0;
+        while (exceptions.hasNext()) {
+            long value = exceptions.nextLong();
+            int valueIndex = ruleSet.ruleIndex(value);
+            if (length > 0 && value == start + length && valueIndex == index) {
+                length++;
+                continue;
+            }
+            if (length > 0) previousEnd = writeRun(data, previousEnd, start, length, index);
+            start = value;
+            length = 1;
+            index = valueIndex;
+        }
+        if (length > 0) writeRun(data, previousEnd, start, length, index);
+        writeVarLong(data, 0);
+        data.flush();
+    }
+
+    /**
+     * Decodes an encoding back to the exact UTF-8 text of the output.
+     * @param in The stream to read the encoding from.
+     * @param out The stream to write the text to, which is flushed but not closed.
+     * @throws IOException if the encoding cannot be read or is not valid.
+     */
+    static void decode(InputStream in, OutputStream out) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in, FizzBuzz.BUFFER_SIZE));
+        if (data.readInt() != MAGIC) throw new IOException("Not a FizzBuzz binary encoding");
+        int version = data.readUnsignedByte();
+        if (version != VERSION) throw new IOException("Unsupported encoding version " + version);
+        long from = data.readLong();
+        long to = data.readLong();
+        if (from <= 0 || from > to) throw new IOException("Invalid range from(" + from + ") to(" + to + ")");
+        boolean withStatistics = data.readBoolean();
+        long ruleCount = readVarLong(data);
+        if (ruleCount < 0 || ruleCount > MAX_RULES) throw new IOException("Invalid rule count " + ruleCount);
+        String[] results = new String[(int) ruleCount];
+        for (int i = 0; i < results.length; i++) {
+            long length = readVarLong(data);
+            if (length < 0 || length > MAX_RESULT_BYTES) throw new IOException("Invalid result length " + length);
+            byte[] bytes = new byte[(int) length];
+            data.readFully(bytes);
+            results[i] = new String(bytes, UTF_8);
+        }
+        int bits = bitsPerIndex(results.length);
+        long cycleLength = readVarLong(data);
+        if (cycleLength < 1 || cycleLength > RuleTable.MAX_CYCLE) throw new IOException("Invalid cycle " + cycleLength);
+        int cycle = (int) cycleLength;
+        int[] winners = new int[cycle];
+        long packed = 0;
+        int filled = 0;
+        for (int residue = 0; residue < cycle; residue++) {
+            while (filled < bits) {
+                packed |= (long) data.readUnsignedByte() << filled;
+                filled += 8;
+            }
+            winners[residue] = (int) (packed & ((1 << bits) - 1));
+            if (winners[residue] > results.length) throw new IOException("Invalid rule index " + winners[residue]);
+            packed >>>= bits;
+            filled -= bits;
+        }
+        TokenEncoder sink = new TokenEncoder(results, bytes ->
+                out.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining()));
+        long[] counts = new long[results.length + 1];
+        Runs runs = new Runs(data, from, to, results.length);
+        int residue = (int) (from % cycle);
+        long value = from;
+        while (true) {
+            long end = (runs.done || runs.start > to) ? to : runs.start - 1;
+            if (value <= end) {
+                residue = renderPeriodic(value, end, winners, residue, sink, counts);
+                if (end == to) break;
+            }
+            end = Math.min(runs.end, to);
+            for (long exception = runs.start; ; exception++) {
+                sink.token(runs.index, exception);
+                if (exception == end) break;
+            }
+            counts[runs.index] += end - runs.start + 1;
+            residue = (int) ((residue + (end - runs.start + 1)) % cycle);
+            if (end == to) break;
+            value = end + 1;
+            runs.next();
+        }
+        if (withStatistics) {
+            Statistics statistics = new Statistics(results);
+            statistics.add(counts);
+            sink.text(FizzBuzz.LINE_SEPARATOR + statistics.format());
+        }
+        sink.flush();
+        out.flush();
+    }
+
+    private static int renderPeriodic(long from, long to, int[] winners, int residue, TokenSink sink, long[] counts)
+            throws IOException {
+        int cycle = winners.length;
+        for (long value = from; ; value++) {
+            int index = winners[residue];
+            if (++residue == cycle) residue = 0;
+            counts[index]++;
+            sink.token(index, value);
+            if (value == to) return residue;
+        }
+    }
+
+    /**
+     * Reads exception runs one at a time as decoding reaches them,
+     * checking that each lies after the previous within the range.
+     */
+    private static final class Runs {
+
+        private final DataInputStream data;
+        private final long to;
+        private final int ruleCount;
+        private long start;
+        private long end;
+        private int index;
+        private boolean done;
+
+        private Runs(DataInputStream data, long from, long to, int ruleCount) throws IOException {
+            this.data = data;
+            this.to = to;
+            this.ruleCount = ruleCount;
+            this.end = from - 1;
+            next();
+        }
+
+        private void next() throws IOException {
+            long length = readVarLong(data);
+            if (length == 0) {
+                done = true;
+                return;
+            }
+            long gap = readVarLong(data);
+            long runIndex = readVarLong(data);
+            if (length < 0 || gap < 0 || gap > to - end - 1 || length > to - end - gap) {
+                throw new IOException("Invalid run of length " + length + " after a gap of " + gap);
+            }
+            if (runIndex < 0 || runIndex > ruleCount) throw new IOException("Invalid rule index " + runIndex);
+            start = end + 1 + gap;
+            end = start + length - 1;
+            index = (int) runIndex;
+        }
+    }
+
+    private static long writeRun(DataOutputStream data, long previousEnd, long start, long length, int index)
+            throws IOException {
+        writeVarLong(data, length);
+        writeVarLong(data, start - previousEnd - 1);
+        writeVarLong(data, index);
+        return start + length - 1;
+    }
+
+    private static int bitsPerIndex(int ruleCount) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(ruleCount));
+    }
+
+    private static void writeVarLong(DataOutputStream data, long value) throws IOException {
+        long rest = value;
+        while ((rest & ~0x7FL) != 0) {
+            data.writeByte((int) ((rest & 0x7F) | 0x80));
+            rest >>>= 7;
+        }
+        data.writeByte((int) rest);
+    }
+
+    private static long readVarLong(DataInputStream data) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = data.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed variable length integer");
+    }
+}
@@ -0,0 +1,426 @@
+package com.agilesphere;
+
+import com.google.common.collect.ImmutableList;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * The winning rule of every value in a range, packed into a few bits per
+ * value outside the heap. Each value is stored as its rule index in order
+ * of precedence, or the rule count for values output as numbers, in as
+ * many bits as the largest index needs. As many indices as fit whole are
+ * packed into each 64 bit word, and words are held in direct buffers of a
+ * fixed number of words so that ranges larger than a single buffer can be
+ * classified. A small directory on the heap holds the number of values of
+ * each index before every page and every block of words, so counting the
+ * values of an index up to a value scans at most one block, comparing the
+ * indices of a whole word at once, and finding the value with a given
+ * count is a search of the directory followed by the same scan.
+ */
+public final class Classification {
+
+    static final int WORDS_PER_PAGE = 1 << 20;
+    static final int WORDS_PER_BLOCK = 128;
+
+    private static final int MAGIC = 0x465A4243;
+    private static final int VERSION = 1;
+
+    private final long from;
+    private final long to;
+    private final List<String> results;
+    private final int codes;
+    private final int bits;
+    private final int perWord;
+    private final int wordsPerPage;
+    private final long valuesPerPage;
+    private final long highBits;
+    private final long lowBits;
+    private final ByteBuffer[] pages;
+    private final long[] pageCounts;
+    private final int[][] blockCounts;
+
+    private Classification(long from, long to, List<String> results, int wordsPerPage, ByteBuffer[] pages) {
+        this.from = from;
+        this.to = to;
+        this.results = ImmutableList.copyOf(results);
+        this.codes = results.size() + 1;
+        this.bits = bitsFor(codes);
+        this.perWord = Long.SIZE / bits;
+        this.wordsPerPage = wordsPerPage;
+        this.valuesPerPage = (long) wordsPerPage * perWord;
+        long high = 0;
+        for (int slot = 0; slot < perWord; slot++) {
+            high |= 1L << (slot * bits + bits - 1);
+        }
+        this.highBits = high;
+        this.lowBits = fields(perWord) & ~high;
+        this.pages = pages;
+        this.pageCounts = new long[(pages.length + 1) * codes];
+        this.blockCounts = new int[pages.length][];
+    }
+
+    /**
+     * Classifies every value in the range, building pages in parallel.
+     * @param ruleSet The rules to classify values with.
+     * @param from The start value of the range.
+     * @param to The end value of the range.
+     * @param parallelism The number of pages to build concurrently.
+     * @return The classification.
+     */
+    static Classification build(RuleSet ruleSet, long from, long to, int parallelism) {
+        return build(ruleSet, from, to, parallelism, WORDS_PER_PAGE);
+    }
+
+    static Classification build(RuleSet ruleSet, long from, long to, int parallelism, int wordsPerPage) {
+        checkArgument(wordsPerPage > 0 && wordsPerPage <= Integer.MAX_VALUE / Long.BYTES,
+                "Words per page must be positive and fit a buffer - wordsPerPage(%s)", wordsPerPage);
+        int bits = bitsFor(ruleSet.results().length + 1);
+        long valuesPerPage = (long) wordsPerPage * (Long.SIZE / bits);
+        long values = to - from + 1;
+        long pageCount = (values - 1) / valuesPerPage + 1;
+        checkArgument(pageCount <= Integer.MAX_VALUE, "Range is too large to classify - from(%s) to(%s)", from, to);
+        ByteBuffer[] pages = new ByteBuffer[(int) pageCount];
+        Classification classification =
+                new Classification(from, to, ImmutableList.copyOf(ruleSet.results()), wordsPerPage, pages);
+        IntStream indices = IntStream.range(0, pages.length);
+        if (parallelism > 1) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.submit(() -> indices.parallel().forEach(page -> classification.fill(ruleSet, page))).join();
+            } finally {
+                pool.shutdown();
+            }
+        } else {
+            indices.forEach(page -> classification.fill(ruleSet, page));
+        }
+        classification.index();
+        return classification;
+    }
+
+    /**
+     * Maps a classification saved with {@link #writeTo(Path)} back into
+     * memory without reading it onto the heap.
+     * @param path The file to read.
+     * @return The classification.
+     * @throws IOException if the file cannot be read or is not a saved classification.
+     */
+    public static Classification read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            DataInputStream in = new DataInputStream(Channels.newInputStream(channel));
+            if (in.readInt() != MAGIC) throw new IOException("Not a saved classification - " + path);
+            int version = in.readUnsignedByte();
+            if (version != VERSION) throw new IOException("Unsupported classification version " + version);
+            long from = in.readLong();
+            long to = in.readLong();
+            int wordsPerPage = in.readInt();
+            ImmutableList.Builder<String> results = ImmutableList.builder();
+            int ruleCount = in.readInt();
+            for (int i = 0; i < ruleCount; i++) {
+                results.add(in.readUTF());
+            }
+            long position = channel.position();
+            int bits = bitsFor(ruleCount + 1);
+            long valuesPerPage = (long) wordsPerPage * (Long.SIZE / bits);
+            long values = to - from + 1;
+            ByteBuffer[] pages = new ByteBuffer[(int) ((values - 1) / valuesPerPage + 1)];
+            for (int page = 0; page < pages.length; page++) {
+                long pageValues = Math.min(valuesPerPage, values - page * valuesPerPage);
+                long size = Long.BYTES * ((pageValues - 1) / (Long.SIZE / bits) + 1);
+                pages[page] = channel.map(FileChannel.MapMode.READ_ONLY, position, size).order(ByteOrder.LITTLE_ENDIAN);
+                position += size;
+            }
+            Classification classification = new Classification(from, to, results.build(), wordsPerPage, pages);
+            classification.index();
+            return classification;
+        }
+    }
+
+    /**
+     * Saves the classification to a file, replacing any existing content.
+     * @param path The file to write.
+     * @throws IOException if the file cannot be written.
+     */
+    public void writeTo(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, CREATE, TRUNCATE_EXISTING, WRITE)) {
+            DataOutputStream out = new DataOutputStream(Channels.newOutputStream(channel));
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            out.writeLong(from);
+            out.writeLong(to);
+            out.writeInt(wordsPerPage);
+            out.writeInt(results.size());
+            for (String result : results) {
+                out.writeUTF(result);
+            }
+            out.flush();
+            for (ByteBuffer page : pages) {
+                ByteBuffer bytes = page.duplicate();
+                bytes.clear();
+                while (bytes.hasRemaining()) channel.write(bytes);
+            }
+        }
+    }
+
+    /**
+     * The start value of the range.
+     * @return the start value
+     */
+    public long from() {
+        return from;
+    }
+
+    /**
+     * The end value of the range.
+     * @return the end value
+     */
+    public long to() {
+        return to;
+    }
+
+    /**
+     * The result of each rule in order of precedence, indexed as by
+     * {@link #ruleIndex(long)}.
+     * @return the rule results
+     */
+    public List<String> results() {
+        return results;
+    }
+
+    /**
+     * The number of bits each value is packed into.
+     * @return the bits per value
+     */
+    public int bitsPerValue() {
+        return bits;
+    }
+
+    /**
+     * The number of bytes held outside the heap.
+     * @return the size of the packed values in bytes
+     */
+    public long offHeapBytes() {
+        long bytes = 0;
+        for (ByteBuffer page : pages) {
+            bytes += page.capacity();
+        }
+        return bytes;
+    }
+
+    /**
+     * The index of the rule that won the value in order of precedence,
+     * or the rule count if the value was output as a number.
+     * @param value The value in the range.
+     * @return the rule index
+     */
+    public int ruleIndex(long value) {
+        checkInRange(value);
+        long offset = value - from;
+        ByteBuffer page = pages[(int) (offset / valuesPerPage)];
+        long inPage = offset % valuesPerPage;
+        long word = page.getLong((int) (inPage / perWord) * Long.BYTES);
+        return (int) ((word >>> ((inPage % perWord) * bits)) & ((1 << bits) - 1));
+    }
+
+    /**
+     * The number of values in the range with the rule index.
+     * @param ruleIndex The rule index, or the rule count for numbers.
+     * @return the count
+     */
+    public long count(int ruleIndex) {
+        checkRuleIndex(ruleIndex);
+        return pageCounts[pages.length * codes + ruleIndex];
+    }
+
+    /**
+     * The number of values from the start of the range up to and
+     * including the value that have the rule index.
+     * @param ruleIndex The rule index, or the rule count for numbers.
+     * @param value The value in the range.
+     * @return the rank of the value
+     */
+    public long rank(int ruleIndex, long value) {
+        checkRuleIndex(ruleIndex);
+        checkInRange(value);
+        long offset = value - from;
+        int page = (int) (offset / valuesPerPage);
+        long inPage = offset % valuesPerPage;
+        int word = (int) (inPage / perWord);
+        int block = word / WORDS_PER_BLOCK;
+        long rank = pageCounts[page * codes + ruleIndex] + blockCounts[page][block * codes + ruleIndex];
+        long pattern = pattern(ruleIndex);
+        ByteBuffer buffer = pages[page];
+        for (int w = block * WORDS_PER_BLOCK; w < word; w++) {
+            rank += matches(buffer.getLong(w * Long.BYTES), pattern, perWord);
+        }
+        return rank + matches(buffer.getLong(word * Long.BYTES), pattern, (int) (inPage % perWord) + 1);
+    }
+
+    /**
+     * The value in the range with the given rank for the rule index,
+     * so that the first value with the index has rank 1.
+     * @param ruleIndex The rule index, or the rule count for numbers.
+     * @param rank The rank, from 1 up to the count of the rule index.
+     * @return the value with the rank
+     */
+    public long select(int ruleIndex, long rank) {
+        checkRuleIndex(ruleIndex);
+        long count = count(ruleIndex);
+        checkArgument(rank > 0 && rank <= count, "Rank must be from 1 to %s - rank(%s)", count, rank);
+        int page = 0;
+        for (int low = 0, high = pages.length - 1; low <= high; ) {
+            int middle = (low + high) >>> 1;
+            if (pageCounts[middle * codes + ruleIndex] < rank) {
+                page = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        long remaining = rank - pageCounts[page * codes + ruleIndex];
+        int[] blocks = blockCounts[page];
+        int block = 0;
+        for (int low = 0, high = blocks.length / codes - 1; low <= high; ) {
+            int middle = (low + high) >>> 1;
+            if (blocks[middle * codes + ruleIndex] < remaining) {
+                block = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        remaining -= blocks[block * codes + ruleIndex];
+        long pattern = pattern(ruleIndex);
+        ByteBuffer buffer = pages[page];
+        for (int w = block * WORDS_PER_BLOCK; ; w++) {
+            long word = buffer.getLong(w * Long.BYTES);
+            int matches = matches(word, pattern, perWord);
+            if (matches < remaining) {
+                remaining -= matches;
+                continue;
+            }
+            for (int slot = 0; ; slot++) {
+                if (((word >>> (slot * bits)) & ((1 << bits) - 1)) == ruleIndex && --remaining == 0) {
+                    return from + page * valuesPerPage + (long) w * perWord + slot;
+                }
+            }
+        }
+    }
+
+    private void fill(RuleSet ruleSet, int page) {
+        long pageFrom = from + page * valuesPerPage;
+        long pageTo = (to - pageFrom < valuesPerPage) ? to : pageFrom + valuesPerPage - 1;
+        long values = pageTo - pageFrom + 1;
+        ByteBuffer buffer = ByteBuffer.allocateDirect((int) (Long.BYTES * ((values - 1) / perWord + 1)))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        Packer packer = new Packer(buffer);
+        ruleSet.spliterator(pageFrom, pageTo).forEachRemaining(packer);
+        packer.finish();
+        pages[page] = buffer;
+    }
+
+    private void index() {
+        long padding = (long) perWord * (pages[pages.length - 1].capacity() / Long.BYTES)
+                - ((to - from) % valuesPerPage + 1);
+        for (int page = 0; page < pages.length; page++) {
+            ByteBuffer buffer = pages[page];
+            int words = buffer.capacity() / Long.BYTES;
+            int[] blocks = new int[((words - 1) / WORDS_PER_BLOCK + 1) * codes];
+            long[] totals = new long[codes];
+            for (int w = 0; w < words; w++) {
+                if (w % WORDS_PER_BLOCK == 0) {
+                    for (int code = 0; code < codes; code++) {
+                        blocks[(w / WORDS_PER_BLOCK) * codes + code] = (int) totals[code];
+                    }
+                }
+                long word = buffer.getLong(w * Long.BYTES);
+                for (int code = 0; code < codes; code++) {
+                    totals[code] += matches(word, pattern(code), perWord);
+                }
+            }
+            if (page == pages.length - 1) totals[0] -= padding;
+            blockCounts[page] = blocks;
+            for (int code = 0; code < codes; code++) {
+                pageCounts[(page + 1) * codes + code] = pageCounts[page * codes + code] + totals[code];
+            }
+        }
+    }
+
+    /**
+     * Counts the fields among the first slots of a word that equal the
+     * pattern, by setting the high bit of every field that differs.
+     */
+    private int matches(long word, long pattern, int slots) {
+        long difference = word ^ pattern;
+        long differs = (((difference & lowBits) + lowBits) | difference) & highBits;
+        long mask = highBits & fields(slots);
+        return slots - Long.bitCount(differs & mask);
+    }
+
+    private long pattern(int code) {
+        long pattern = 0;
+        for (int slot = 0; slot < perWord; slot++) {
+            pattern |= (long) code << (slot * bits);
+        }
+        return pattern;
+    }
+
+    private long fields(int slots) {
+        return (slots * bits == Long.SIZE) ? -1L : (1L << (slots * bits)) - 1;
+    }
+
+    private void checkInRange(long value) {
+        checkArgument(value >= from && value <= to, "Value must be in range - value(%s) from(%s) to(%s)", value, from, to);
+    }
+
+    private void checkRuleIndex(int ruleIndex) {
+        checkArgument(ruleIndex >= 0 && ruleIndex < codes,
+                "Rule index must be from 0 to %s - ruleIndex(%s)", codes - 1, ruleIndex);
+    }
+
+    private static int bitsFor(int codes) {
+        return Math.max(1, 32 - Integer.numberOfLeadingZeros(codes - 1));
+    }
+
+    /**
+     * Packs rule indices into consecutive words of a page.
+     */
+    private final class Packer implements IntConsumer {
+
+        private final ByteBuffer buffer;
+        private long word;
+        private int slot;
+        private int index;
+
+        private Packer(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void accept(int ruleIndex) {
+            word |= (long) ruleIndex << (slot * bits);
+            if (++slot == perWord) {
+                buffer.putLong(index++ * Long.BYTES, word);
+                word = 0;
+                slot = 0;
+            }
+        }
+
+        private void finish() {
+            if (slot > 0) buffer.putLong(index * Long.BYTES, word);
+        }
+    }
+}
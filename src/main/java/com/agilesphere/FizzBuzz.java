@@ -1,20 +1,42 @@
 package com.agilesphere;
 
+import com.agilesphere.TokenEncoder.ByteSink;
+import com.agilesphere.rules.LongRule;
 import com.agilesphere.rules.Rule;
 import com.google.common.base.Objects;
-
+import com.google.common.base.Throwables;
+import com.google.common.base.Utf8;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.function.Function;
-import java.util.function.IntPredicate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongPredicate;
 import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static com.agilesphere.rules.Rules.*;
 import static com.google.common.base.MoreObjects.toStringHelper;
 import static com.google.common.base.Objects.equal;
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.*;
 import static java.util.Arrays.asList;
-import static java.util.stream.Collectors.*;
 
 /**
  * FizzBuzz ranges over an ascending sequence of numbers replacing:
@@ -24,30 +46,53 @@ import static java.util.stream.Collectors.*;
  */
 public class FizzBuzz {
 
-    private static final IntPredicate IS_NEGATIVE = i -> i <= 0;
+    private static final LongPredicate IS_NEGATIVE = i -> i <= 0;
 
-    private static final String NUMBER = "number";
-    private static final String SPACE = " ";
     static final String LINE_SEPARATOR = System.getProperty("line.separator");
+    static final int BUFFER_SIZE = 8192;
 
-    private final int from;
-    private final int to;
+    private final long from;
+    private final long to;
     private final List<Rule> coreRules;
     private final List<Rule> overrideRules;
     private final boolean withStatistics;
-    private String output;
-
-    private Integer hashCode;
-    private String asString;
-
-    private FizzBuzz(int from, int to, List<Rule> overrideRules, boolean withStatistics) {
+    private final int parallelism;
+    private final int workers;
+    private final boolean withSharedCache;
+    private final SegmentStore segmentStore;
+    private final Instrumentation instrumentation;
+    private final RuleSet ruleSet;
+    private final OffsetIndex offsetIndex;
+    private final OutputRope base;
+    private final AtomicReference<CompletableFuture<OutputRope>> output = new AtomicReference<>();
+
+    private volatile Integer hashCode;
+    private volatile String asString;
+
+    private FizzBuzz(long from, long to, List<Rule> overrideRules, boolean withStatistics, int parallelism,
+                     int workers, boolean withSharedCache, SegmentStore segmentStore, boolean withInstrumentation,
+                     OutputRope base) {
         checkArgument(allPositive(from, to), "Inputs must be positive - from(%s) to(%s)", from, to);
         checkArgument(inAscendingOrder(from, to), "from(%s) cannot be bigger than to(%s)", from, to);
+        checkArgument(to <= Integer.MAX_VALUE || allLongRules(overrideRules),
+                "Override rules must be LongRules when to(%s) is bigger than %s", to, Integer.MAX_VALUE);
         this.from = from;
         this.to = to;
         this.coreRules = asList(FIZZBUZZ_RULE, FIZZ_RULE, BUZZ_RULE);
-        this.overrideRules = overrideRules;
+        this.overrideRules = ImmutableList.copyOf(overrideRules);
         this.withStatistics = withStatistics;
+        this.parallelism = parallelism;
+        this.workers = workers;
+        this.withSharedCache = withSharedCache;
+        this.segmentStore = segmentStore;
+        this.instrumentation = withInstrumentation ? Instrumentation.shared() : null;
+        this.ruleSet = new RuleSet(precedenceOrder(this.overrideRules));
+        checkArgument(workers == 0 || this.overrideRules.stream().allMatch(ShardWorker::isDistributable),
+                "Override rules must be divisibility or digit rules to be distributed - rules(%s)", this.overrideRules);
+        checkArgument(segmentStore == null || this.overrideRules.stream().allMatch(ShardWorker::isDistributable),
+                "Override rules must be divisibility or digit rules to be stored - rules(%s)", this.overrideRules);
+        this.offsetIndex = new OffsetIndex(ruleSet, from, to);
+        this.base = base;
     }
 
     /**
@@ -55,102 +100,556 @@ public class FizzBuzz {
      * parameters which include the numeric range to iterate over
      * as well as any optional override rules and statistics.
      * The immutable output will be cached after first call to
-     * optimise performance on subsequent calls.
+     * optimise performance on subsequent calls. Instances can be
+     * shared between threads: the first caller claims the output
+     * by installing a future with a compare and set and renders it,
+     * and concurrent callers wait for that future rather than
+     * rendering the output again. If rendering fails every waiting
+     * caller sees the failure and the next call renders afresh.
      * @return FizzBuzz output string.
      */
     public String output() {
-        if (output == null) {
-            output = IntStream.rangeClosed(from, to)
-                    .mapToObj(this::convert)
-                    .collect(joining(SPACE));
-            if (withStatistics) output += statistics();
+        return rope().toString();
+    }
+
+    /**
+     * A FizzBuzz instance for the range extended to a larger end value,
+     * with the same rules and options, that renders and counts only the
+     * values after the current end. The output of this instance is
+     * rendered and cached first if it has not been already, and the new
+     * instance shares it as a prefix of its own output without copying
+     * it, adding the statistics of the new values to those counted for
+     * this range. Extending repeatedly costs in proportion to the values
+     * added each time, and the output of an extended instance is only
+     * built as a single string when {@link #output()} is called.
+     * @param newTo The end value of the extended range.
+     * @return A FizzBuzz instance for the extended range.
+     */
+    public FizzBuzz extendTo(long newTo) {
+        checkArgument(newTo >= to, "newTo(%s) cannot be smaller than to(%s)", newTo, to);
+        if (newTo == to) return this;
+        return new FizzBuzz(from, newTo, overrideRules, withStatistics, parallelism, workers, withSharedCache,
+                segmentStore, instrumentation != null, rope());
+    }
+
+    /**
+     * Streams FizzBuzz output to the given Appendable in bounded
+     * chunks so that the full output is never held in memory.
+     * The characters written are identical to {@link #output()}.
+     * @param out The Appendable to write to.
+     * @throws IOException if the Appendable cannot be written to.
+     */
+    public void writeTo(Appendable out) throws IOException {
+        Appendable counted = counted(out);
+        if (isConcurrent() && !isCached()) {
+            renderParallel(bytes -> counted.append(UTF_8.decode(bytes)));
+        } else {
+            render(new TokenAppender(ruleSet.results(), counted));
+        }
+    }
+
+    /**
+     * Streams FizzBuzz output to the given OutputStream as UTF-8
+     * encoded bytes through a fixed size buffer. Tokens are encoded
+     * directly into the buffer without allocating per value. The
+     * stream is flushed but not closed.
+     * @param out The OutputStream to write to.
+     * @throws IOException if the OutputStream cannot be written to.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        ByteSink sink = counted(bytes -> out.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining()));
+        if (isConcurrent() && !isCached()) {
+            renderParallel(sink);
+        } else {
+            render(new TokenEncoder(ruleSet.results(), sink));
+        }
+        out.flush();
+    }
+
+    /**
+     * Streams FizzBuzz output to the given channel as UTF-8
+     * encoded bytes through a fixed size buffer. Tokens are
+     * encoded directly into the buffer without allocating per
+     * value. The channel is not closed.
+     * @param channel The channel to write to.
+     * @throws IOException if the channel cannot be written to.
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        ByteSink sink = counted(bytes -> {
+            while (bytes.hasRemaining()) channel.write(bytes);
+        });
+        if (isConcurrent() && !isCached()) {
+            renderParallel(sink);
+        } else {
+            render(new TokenEncoder(ruleSet.results(), sink));
+        }
+    }
+
+    /**
+     * Writes FizzBuzz output to a file as UTF-8 encoded bytes,
+     * replacing any existing content. The exact size of the file
+     * is calculated up front so that it can be presized and filled
+     * through memory mapped regions, in parallel when parallelism
+     * is set, without holding the output text on the heap.
+     * @param path The file to write to.
+     * @throws IOException if the file cannot be written to.
+     */
+    public void writeTo(Path path) throws IOException {
+        if (cachedOutput() != null || base != null || isCached() || workers > 0) {
+            try (FileChannel channel = FileChannel.open(path, CREATE, TRUNCATE_EXISTING, WRITE)) {
+                writeTo(channel);
+            }
+            return;
+        }
+        long start = (instrumentation != null) ? System.nanoTime() : 0;
+        Statistics statistics = new MappedFileWriter(ruleSet, parallelism).write(from, to, withStatistics, path);
+        if (instrumentation != null) {
+            instrumentation.generated(to - from + 1, System.nanoTime() - start, statistics);
+            instrumentation.wrote(Files.size(path));
+        }
+    }
+
+    /**
+     * Writes a compact binary encoding of the output that can be
+     * decoded back to the exact text with {@link #decodeBinary}.
+     * Numbers are not stored, only which rule wins each value: the
+     * periodic pattern of the rules once and the values that other
+     * rules win as runs, so with the core rules alone the encoding
+     * is a few dozen bytes whatever the range. The stream is
+     * flushed but not closed.
+     * @param out The OutputStream to write to.
+     * @throws IOException if the OutputStream cannot be written to.
+     */
+    public void writeBinaryTo(OutputStream out) throws IOException {
+        BinaryFormat.encode(ruleSet, from, to, withStatistics, out);
+    }
+
+    /**
+     * Decodes a binary encoding written by {@link #writeBinaryTo}
+     * to the UTF-8 encoded output it was written from, streaming
+     * the text without holding it in memory. The output stream is
+     * flushed but neither stream is closed.
+     * @param in The InputStream to read the encoding from.
+     * @param out The OutputStream to write the output to.
+     * @throws IOException if the encoding cannot be read or is not valid,
+     *         or if the OutputStream cannot be written to.
+     */
+    public static void decodeBinary(InputStream in, OutputStream out) throws IOException {
+        BinaryFormat.decode(in, out);
+    }
+
+    /**
+     * Calculates FizzBuzz statistics for the range without
+     * generating any output text. Statistics are formatted as
+     * sorted 'result: count' lines with unmatched values
+     * counted as 'number'. When all rules are periodic or
+     * digit rules the statistics are calculated in closed form,
+     * otherwise every value in the range is classified.
+     * @return FizzBuzz statistics string.
+     */
+    public String statistics() {
+        long start = (instrumentation != null) ? System.nanoTime() : 0;
+        Statistics statistics;
+        if (isParallel() && !ruleSet.countsInClosedForm()) {
+            statistics = new ParallelRenderer(ruleSet, parallelism).count(first(), to);
+        } else {
+            statistics = ruleSet.newStatistics();
+            ruleSet.count(first(), to, statistics);
+        }
+        if (base != null) base.addCountsTo(statistics);
+        if (instrumentation != null) instrumentation.counted(System.nanoTime() - start);
+        return formatted(statistics);
+    }
+
+    /**
+     * The output token for a single value in the range,
+     * found without generating any other output.
+     * @param value The value in the range.
+     * @return The rule result or the value as a number.
+     */
+    public String tokenAt(long value) {
+        checkInRange(value);
+        return ruleSet.token(value);
+    }
+
+    /**
+     * The output tokens of the range in ascending order, the rule
+     * result or the value as a number, without statistics. Tokens
+     * are classified lazily as the stream is consumed. The stream
+     * is sized and splits evenly at range midpoints, so it can be
+     * consumed in parallel.
+     * @return A stream of tokens.
+     */
+    public Stream<CharSequence> tokens() {
+        return StreamSupport.stream(ruleSet.spliterator(from, to).tokens(), false);
+    }
+
+    /**
+     * The index of the winning rule for each value of the range in
+     * ascending order. Override rules are indexed in order of
+     * precedence followed by the fizzbuzz, fizz and buzz rules, and
+     * values that no rule matches are indexed as the rule count.
+     * The stream is sized and splits evenly at range midpoints.
+     * @return A stream of rule indices.
+     */
+    public IntStream ruleIndices() {
+        return StreamSupport.intStream(ruleSet.spliterator(from, to), false);
+    }
+
+    /**
+     * Classifies every value of the range by its winning rule, indexed
+     * as by {@link #ruleIndices()}, into a bit-packed structure held
+     * outside the heap. Each value takes as few bits as the rule count
+     * allows, two with the core rules alone, and the classification
+     * answers rank, select and count by rule queries without generating
+     * output. Pages of values are classified in parallel when
+     * parallelism is set.
+     * @return The classification of the range.
+     */
+    public Classification classify() {
+        return Classification.build(ruleSet, from, to, parallelism);
+    }
+
+    /**
+     * A publisher of the output tokens of the range, as from
+     * {@link #tokens()}, to subscribers that request them. Each
+     * subscriber receives the whole range from the start and tokens
+     * are only classified once they have been requested, so a slow
+     * subscriber never causes output to be buffered.
+     * @return A publisher of tokens.
+     */
+    public Flow.Publisher<CharSequence> publisher() {
+        return new TokenPublisher(() -> ruleSet.spliterator(from, to).tokens());
+    }
+
+    /**
+     * The values in the range whose output is the result of the rule,
+     * in ascending order and found lazily. Values that a rule of higher
+     * precedence wins are excluded. For periodic rules the iterator
+     * jumps between the values the rule wins and for base 10 digit
+     * rules it skips whole blocks of digits, so the cost is in
+     * proportion to the number of values found rather than the size
+     * of the range.
+     * @param rule The rule, one of the override or core rules.
+     * @return An iterator over the matching values.
+     */
+    public PrimitiveIterator.OfLong valuesMatching(Rule rule) {
+        int index = ruleSet.indexOf(rule);
+        checkArgument(index >= 0, "Rule must be an override or core rule - rule(%s)", rule);
+        boolean[] targets = new boolean[ruleSet.results().length + 1];
+        targets[index] = true;
+        return ruleSet.valuesWonBy(from, to, targets);
+    }
+
+    /**
+     * The values in the range whose output is the result, in ascending
+     * order and found lazily as by {@link #valuesMatching(Rule)}. Every
+     * rule with the result is matched.
+     * @param result The rule result, such as "fizz".
+     * @return An iterator over the values producing the result.
+     */
+    public PrimitiveIterator.OfLong valuesProducing(String result) {
+        String[] results = ruleSet.results();
+        boolean[] targets = new boolean[results.length + 1];
+        for (int i = 0; i < results.length; i++) {
+            targets[i] = results[i].equals(result);
         }
-        return output;
+        return ruleSet.valuesWonBy(from, to, targets);
     }
 
-    private String convert(int value) {
-        Optional<String> anyOverrideMatch = anyMatchingOverrideRule(value);
-        if (anyOverrideMatch.isPresent()) return anyOverrideMatch.get();
+    /**
+     * The offset of the first byte of the token for a value in
+     * the UTF-8 encoded output, found without generating output.
+     * The offset is calculated in closed form when all rules are
+     * periodic or digit rules, otherwise from a sparse index of
+     * offsets that is built on first use.
+     * @param value The value in the range.
+     * @return The byte offset of the token.
+     */
+    public long byteOffsetOf(long value) {
+        checkInRange(value);
+        return offsetIndex.offsetOf(value);
+    }
 
-        Optional<String> anyCoreMatch = anyMatchingCoreRule(value);
-        if (anyCoreMatch.isPresent()) return anyCoreMatch.get();
+    /**
+     * The value whose token, or the space that follows it, contains
+     * the byte at the given offset of the UTF-8 encoded output.
+     * The offset must be before any statistics in the output.
+     * @param offset The byte offset.
+     * @return The value at the offset.
+     */
+    public long valueAtByteOffset(long offset) {
+        long length = offsetIndex.length();
+        checkArgument(offset >= 0 && offset < length,
+                "Offset must be within output before statistics - offset(%s) length(%s)", offset, length);
+        return offsetIndex.valueAt(offset);
+    }
 
-        return number(value);
+    /**
+     * A slice of the UTF-8 encoded output between the given byte
+     * offsets, decoded as a string. Only the tokens that overlap
+     * the slice are generated.
+     * @param startByte The offset of the first byte, inclusive.
+     * @param endByte The offset of the last byte, exclusive.
+     * @return The slice of output.
+     */
+    public String slice(long startByte, long endByte) {
+        long length = offsetIndex.length();
+        byte[] statisticsBytes = (withStatistics && endByte > length)
+                ? (LINE_SEPARATOR + statistics()).getBytes(UTF_8)
+                : new byte[0];
+        checkArgument(startByte >= 0 && startByte <= endByte && endByte <= length + statisticsBytes.length,
+                "Slice must be within output - start(%s) end(%s)", startByte, endByte);
+        checkArgument(endByte - startByte <= Integer.MAX_VALUE,
+                "Slice is too large - start(%s) end(%s)", startByte, endByte);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) (endByte - startByte));
+        if (startByte < length) {
+            offsetIndex.slice(startByte, Math.min(endByte, length), bytes);
+        }
+        if (endByte > length) {
+            int statisticsStart = (int) Math.max(0, startByte - length);
+            bytes.write(statisticsBytes, statisticsStart, (int) (endByte - length) - statisticsStart);
+        }
+        return new String(bytes.toByteArray(), UTF_8);
     }
 
-    private Optional<String> anyMatchingCoreRule(int value) {
-        return anyMatchingRule(value, coreRules);
+    /**
+     * Evaluates many queries together, sharing work between them.
+     * Queries with the same override rules are compiled once and
+     * their overlapping and adjacent ranges are rendered once, with
+     * each output a view over the shared text. Statistics for each
+     * query are taken from running counters in constant time once
+     * the shared text is rendered.
+     * @param queries The queries to evaluate.
+     * @return The output of each query, in the order given, identical
+     *         to the output of an equivalent FizzBuzz instance.
+     */
+    public static List<CharSequence> evaluateAll(List<Query> queries) {
+        return BatchEvaluator.evaluateAll(queries);
+    }
+
+    /**
+     * The hit, miss and eviction counts of the output cache shared
+     * by instances built {@link Builder#withSharedCache() with the
+     * shared cache}.
+     * @return Shared cache statistics.
+     */
+    public static CacheStats sharedCacheStats() {
+        return SegmentCache.shared().stats();
     }
 
-    private Optional<String> anyMatchingOverrideRule(int value) {
-        if (hasOverrideRules()) {
-            return anyMatchingRule(value, overrideRules);
+    private OutputRope rope() {
+        CompletableFuture<OutputRope> future = output.get();
+        while (future == null) {
+            CompletableFuture<OutputRope> claimed = new CompletableFuture<>();
+            if (output.compareAndSet(null, claimed)) return renderOutput(claimed);
+            future = output.get();
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwables.propagateIfPossible(e.getCause());
+            throw e;
         }
-        return Optional.empty();
     }
 
-    private Optional<String> anyMatchingRule(int value, List<Rule> rules) {
-        String result = null;
-        for (Rule rule : rules) {
-            if (rule.matches(value)) {
-                result = rule.result();
-                break;
+    private OutputRope renderOutput(CompletableFuture<OutputRope> claimed) {
+        try {
+            StringBuilder builder = new StringBuilder();
+            Appendable out = counted(builder);
+            if (base != null) out.append(' ');
+            Statistics statistics;
+            if (isConcurrent() && !isCached()) {
+                statistics = renderValues(bytes -> out.append(UTF_8.decode(bytes)));
+            } else {
+                TokenAppender appender = new TokenAppender(ruleSet.results(), out);
+                statistics = renderValues(appender);
+                appender.flush();
             }
+            if (base != null) base.addCountsTo(statistics);
+            int bodyLength = builder.length();
+            if (withStatistics) out.append(LINE_SEPARATOR + formatted(statistics));
+            String text = builder.toString();
+            OutputRope rope = (base != null)
+                    ? base.append(to, text, bodyLength, statistics)
+                    : OutputRope.of(to, text, bodyLength, statistics);
+            claimed.complete(rope);
+            return rope;
+        } catch (IOException e) {
+            throw failOutput(claimed, new UncheckedIOException(e));
+        } catch (RuntimeException e) {
+            throw failOutput(claimed, e);
+        } catch (Error e) {
+            throw failOutput(claimed, e);
         }
-        return (result != null) ? Optional.of(result) : Optional.empty();
     }
 
-    private String number(int value) {
-        return String.valueOf(value);
+    private <T extends Throwable> T failOutput(CompletableFuture<OutputRope> claimed, T failure) {
+        output.compareAndSet(claimed, null);
+        claimed.completeExceptionally(failure);
+        return failure;
     }
 
-    private boolean allPositive(int... values) {
-        OptionalInt anyNegative =
-                IntStream.of(values)
-                        .filter(IS_NEGATIVE)
-                        .findFirst();
-        return !anyNegative.isPresent();
+    private OutputRope cachedOutput() {
+        CompletableFuture<OutputRope> future = output.get();
+        return (future != null && future.isDone() && !future.isCompletedExceptionally()) ? future.join() : null;
     }
 
-    private boolean inAscendingOrder(int from, int to) {
-        return from <= to;
+    private void render(TokenSink sink) throws IOException {
+        OutputRope cached = cachedOutput();
+        if (cached != null) {
+            cached.writeTo(sink);
+            sink.flush();
+            return;
+        }
+        if (base != null) {
+            base.writeBodyTo(sink);
+            sink.text(" ");
+        }
+        Statistics statistics = renderValues(sink);
+        if (base != null) base.addCountsTo(statistics);
+        if (withStatistics) sink.text(LINE_SEPARATOR + formatted(statistics));
+        sink.flush();
     }
 
-    private boolean hasOverrideRules() {
-        return !overrideRules.isEmpty();
+    private void renderParallel(ByteSink sink) throws IOException {
+        if (cachedOutput() != null) {
+            render(new TokenEncoder(ruleSet.results(), sink));
+            return;
+        }
+        if (base != null) {
+            TokenEncoder prefix = new TokenEncoder(ruleSet.results(), sink);
+            base.writeBodyTo(prefix);
+            prefix.text(" ");
+            prefix.flush();
+        }
+        Statistics statistics = renderValues(sink);
+        if (base != null) base.addCountsTo(statistics);
+        if (withStatistics) sink.write(UTF_8.encode(LINE_SEPARATOR + formatted(statistics)));
     }
 
-    private String statistics() {
-        Map<String, Long> frequencies = calculateFrequencies();
-        return formatStatistics(frequencies);
+    private Statistics renderValues(TokenSink sink) throws IOException {
+        long first = first();
+        long start = (instrumentation != null) ? System.nanoTime() : 0;
+        Statistics statistics = ruleSet.newStatistics();
+        if (segmentStore != null) {
+            segmentStore.render(ruleSet, first, to, sink, statistics);
+        } else if (withSharedCache) {
+            SegmentCache.shared().render(ruleSet, first, to, sink, statistics);
+        } else {
+            ruleSet.render(first, to, sink, statistics);
+        }
+        if (instrumentation != null) instrumentation.generated(to - first + 1, System.nanoTime() - start, statistics);
+        return statistics;
     }
 
-    private Map<String, Long> calculateFrequencies() {
-        return IntStream.rangeClosed(from, to)
-                .mapToObj(this::convert)
-                .collect(groupingBy(fizzBuzzIdentity(), counting()));
+    private Statistics renderValues(ByteSink sink) throws IOException {
+        long first = first();
+        long start = (instrumentation != null) ? System.nanoTime() : 0;
+        Statistics statistics = (workers > 0)
+                ? new ShardCoordinator(ruleSet, workers).render(first, to, sink)
+                : new ParallelRenderer(ruleSet, parallelism).render(first, to, sink);
+        if (instrumentation != null) instrumentation.generated(to - first + 1, System.nanoTime() - start, statistics);
+        return statistics;
     }
 
-    private String formatStatistics(Map<String, Long> frequencies) {
-        return LINE_SEPARATOR +
-                frequencies.entrySet()
-                        .stream()
-                        .map(entry -> entry.getKey() + ": " + entry.getValue())
-                        .sorted()
-                        .collect(joining(LINE_SEPARATOR));
+    private String formatted(Statistics statistics) {
+        if (instrumentation == null) return statistics.format();
+        long start = System.nanoTime();
+        String formatted = statistics.format();
+        instrumentation.formatted(System.nanoTime() - start);
+        return formatted;
     }
 
-    private Function<String, String> fizzBuzzIdentity() {
-        return (String s) -> {
-            try {
-                Integer.parseInt(s);
-            } catch (NumberFormatException e) {
-                return s;
+    private Appendable counted(Appendable out) {
+        if (instrumentation == null) return out;
+        return new Appendable() {
+
+            @Override
+            public Appendable append(CharSequence text) throws IOException {
+                instrumentation.wrote(Utf8.encodedLength(text));
+                out.append(text);
+                return this;
+            }
+
+            @Override
+            public Appendable append(CharSequence text, int start, int end) throws IOException {
+                return append(text.subSequence(start, end));
+            }
+
+            @Override
+            public Appendable append(char c) throws IOException {
+                return append(String.valueOf(c));
             }
-            return NUMBER;
         };
     }
 
+    private ByteSink counted(ByteSink sink) {
+        if (instrumentation == null) return sink;
+        return bytes -> {
+            instrumentation.wrote(bytes.remaining());
+            sink.write(bytes);
+        };
+    }
+
+    /**
+     * The first value not already rendered by the base rope.
+     */
+    private long first() {
+        return (base != null) ? base.to() + 1 : from;
+    }
+
+    /**
+     * The number of values in the range.
+     */
+    long size() {
+        return to - from + 1;
+    }
+
+    private boolean isParallel() {
+        return parallelism > 1 && to - first() >= ParallelRenderer.CHUNK_SIZE;
+    }
+
+    private boolean isConcurrent() {
+        return isParallel() || workers > 0;
+    }
+
+    private boolean isCached() {
+        return withSharedCache || segmentStore != null;
+    }
+
+    /**
+     * Override rules followed by the core rules, in order of precedence.
+     * @param overrideRules The override rules in order of precedence.
+     * @return All rules in order of precedence
+     */
+    static List<Rule> precedenceOrder(List<Rule> overrideRules) {
+        return ImmutableList.<Rule>builder()
+                .addAll(overrideRules)
+                .add(FIZZBUZZ_RULE, FIZZ_RULE, BUZZ_RULE)
+                .build();
+    }
+
+    private boolean allPositive(long... values) {
+        OptionalLong anyNegative =
+                LongStream.of(values)
+                        .filter(IS_NEGATIVE)
+                        .findFirst();
+        return !anyNegative.isPresent();
+    }
+
+    private boolean inAscendingOrder(long from, long to) {
+        return from <= to;
+    }
+
+    private boolean allLongRules(List<Rule> rules) {
+        return rules.stream().allMatch(rule -> rule instanceof LongRule);
+    }
+
+    private void checkInRange(long value) {
+        checkArgument(value >= from && value <= to, "Value must be in range - value(%s) from(%s) to(%s)", value, from, to);
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
@@ -190,10 +689,16 @@ public class FizzBuzz {
      */
     public static class Builder {
 
-        private int from = 1;
-        private int to = 20;
+        private long from = 1;
+        private long to = 20;
         private List<Rule> rules = new ArrayList<>();
         private boolean withStatistics = false;
+        private int parallelism = 1;
+        private int workers = 0;
+        private boolean withSharedCache = false;
+        private Path storeDirectory = null;
+        private long storeMaxBytes = SegmentStore.DEFAULT_MAX_BYTES;
+        private boolean withInstrumentation = false;
 
         public Builder() {}
 
@@ -203,18 +708,20 @@ public class FizzBuzz {
          * @param from The start value
          * @return FizzBuzz Builder
          */
-        public Builder from(int from) {
+        public Builder from(long from) {
             this.from = from;
             return this;
         }
 
         /**
          * The end value to generate FizzBuzz to.
-         * Must be positive integer.
+         * Must be positive integer. Values beyond the
+         * range of an int require all override rules
+         * to be {@link LongRule}s.
          * @param to The end value
          * @return FizzBuzz Builder
          */
-        public Builder to(int to) {
+        public Builder to(long to) {
             this.to = to;
             return this;
         }
@@ -242,21 +749,136 @@ public class FizzBuzz {
             return this;
         }
 
+        /**
+         * Generate output in parallel using the
+         * default fork join pool parallelism.
+         * @return FizzBuzz Builder
+         */
+        public Builder parallel() {
+            return parallelism(ForkJoinPool.getCommonPoolParallelism());
+        }
+
+        /**
+         * Generate output in parallel with the given number
+         * of threads. Output is identical to sequential output.
+         * Must be positive integer.
+         * @param parallelism The number of threads
+         * @return FizzBuzz Builder
+         */
+        public Builder parallelism(int parallelism) {
+            checkArgument(parallelism > 0, "Parallelism must be positive - parallelism(%s)", parallelism);
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * Generate output across the given number of worker
+         * processes on this machine. Each worker is a child JVM
+         * running the FizzBuzz main class in worker mode with the
+         * same class path, rendering shards of the range sent to it
+         * over a loopback socket. Output is identical to sequential
+         * output, and shards of a worker that fails are rendered by
+         * the remaining workers. Override rules must be divisibility
+         * or digit rules. Must be positive integer.
+         * @param workers The number of worker processes
+         * @return FizzBuzz Builder
+         */
+        public Builder distributed(int workers) {
+            checkArgument(workers > 0, "Workers must be positive - workers(%s)", workers);
+            this.workers = workers;
+            return this;
+        }
+
+        /**
+         * Reuse output through a size bounded cache shared by all
+         * instances in the process. Output is cached in segments of
+         * values so that identical and overlapping ranges with the
+         * same rules render their common segments once. Output is
+         * rendered sequentially when the shared cache is used.
+         * @return FizzBuzz Builder
+         */
+        public Builder withSharedCache() {
+            this.withSharedCache = true;
+            return this;
+        }
+
+        /**
+         * Reuse output across restarts through a store of segment
+         * files in the directory, bounded to a gigabyte. Segments
+         * are keyed by the rules, so any instance with the same rules
+         * reuses the segments its range covers and renders only the
+         * values that are not stored. Override rules must be
+         * divisibility or digit rules. Output is rendered sequentially
+         * when the store is used.
+         * @param directory The directory of the store.
+         * @return FizzBuzz Builder
+         */
+        public Builder withSegmentStore(Path directory) {
+            return withSegmentStore(directory, SegmentStore.DEFAULT_MAX_BYTES);
+        }
+
+        /**
+         * Reuse output across restarts through a store of segment
+         * files in the directory, evicting the least recently used
+         * segments beyond the size bound. The bound given when the
+         * directory is first used by the process applies.
+         * @param directory The directory of the store.
+         * @param maxBytes The maximum total size of the segment files.
+         * @return FizzBuzz Builder
+         */
+        public Builder withSegmentStore(Path directory, long maxBytes) {
+            checkArgument(maxBytes > 0, "Max bytes must be positive - maxBytes(%s)", maxBytes);
+            this.storeDirectory = directory;
+            this.storeMaxBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * Record rule matches and evaluations, latencies and output
+         * sizes in the process wide {@link Instrumentation}, which is
+         * registered as an MXBean. Recording happens once per call
+         * rather than per value, and instances without instrumentation
+         * record nothing.
+         * @return FizzBuzz Builder
+         */
+        public Builder withInstrumentation() {
+            this.withInstrumentation = true;
+            return this;
+        }
+
         /**
          * Build immutable FizzBuzz instance.
          * @return Immutable FizzBuzz instance
          */
         public FizzBuzz build() {
-            return new FizzBuzz(from, to, rules, withStatistics);
+            return new FizzBuzz(from, to, rules, withStatistics, parallelism, workers, withSharedCache,
+                    segmentStore(), withInstrumentation, null);
+        }
+
+        private SegmentStore segmentStore() {
+            if (storeDirectory == null) return null;
+            try {
+                return SegmentStore.shared(storeDirectory, storeMaxBytes);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
         }
     }
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        if (asList(args).contains("--serve")) {
+            FizzBuzzServer.serve(args);
+            return;
+        }
+        if (asList(args).contains(ShardWorker.WORKER)) {
+            ShardWorker.run(args);
+            return;
+        }
         Scanner in = new Scanner(System.in);
         System.out.println();
         System.out.println("Welcome to FizzBuzz.");
-        int from = getRangeValue(in, "Please enter the number to generate Fizzbuzz from:");
-        int to = getRangeValue(in, "Please enter the number to generate Fizzbuzz to:");
+        long from = getRangeValue(in, "Please enter the number to generate Fizzbuzz from:");
+        long to = getRangeValue(in, "Please enter the number to generate Fizzbuzz to:");
         System.out.println();
         System.out.println("Would you like to add the LUCK override rule to the core game? (Y/n)");
         boolean withLuckRule = in.nextLine().equalsIgnoreCase("Y") ? true : false;
@@ -274,20 +896,21 @@ public class FizzBuzz {
         System.out.println("FizzBuzz:");
         System.out.println("---------");
         System.out.println();
-        System.out.println(fizzBuzz.output());
+        fizzBuzz.writeTo((OutputStream) System.out);
+        System.out.println();
         System.out.println();
     }
 
-    private static int getRangeValue(Scanner in, String message) {
+    private static long getRangeValue(Scanner in, String message) {
         boolean quit = false;
         String input = null;
-        int rangeValue = 0;
+        long rangeValue = 0;
         while (!quit) {
             try {
                 System.out.println();
                 System.out.println(message);
                 input = in.nextLine();
-                rangeValue = Integer.parseInt(input);
+                rangeValue = Long.parseLong(input);
                 if (rangeValue <= 0) throw new IllegalArgumentException("Invalid input value");
                 quit = true;
             } catch (IllegalArgumentException iae) {
@@ -0,0 +1,267 @@
+package com.agilesphere;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static com.agilesphere.rules.Rules.LUCK_RULE;
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Serves FizzBuzz over HTTP with the JDK's built in server.
+ *
+ *   GET /fizzbuzz?from=1&to=100&luck=true&stats=true
+ *
+ * All parameters are optional and default as in {@link FizzBuzz.Builder}.
+ * Ranges of more than the server's maximum number of values, and
+ * parameters that are not numbers or flags, get a 400 response.
+ * Output is streamed straight from the generator as a chunked response
+ * through a fixed size buffer, so the full output is never built in
+ * memory, and connections are kept alive between requests. Requests are
+ * read on the thread accepting connections and handled by a bounded pool
+ * of threads with a bounded queue. Writing to a slow client blocks its
+ * handler thread, and once every thread is busy and the queue is full
+ * new requests get a 503 response rather than waiting.
+ * With chunked responses Nagle's algorithm holds the final chunk back
+ * until the client acknowledges the previous one, so applications
+ * embedding the server should launch with
+ * -Dsun.net.httpserver.nodelay=true. The command line launcher sets it
+ * unless configured otherwise.
+ */
+public final class FizzBuzzServer implements AutoCloseable {
+
+    static final String PATH = "/fizzbuzz";
+    static final int DEFAULT_PORT = 8080;
+    static final int QUEUE_PER_THREAD = 16;
+    static final int RETRY_AFTER_SECONDS = 1;
+    static final long DEFAULT_MAX_VALUES = 100_000_000L;
+    static final int STOP_SECONDS = 5;
+
+    private static final String TEXT = "text/plain; charset=utf-8";
+    private static final String NO_DELAY = "sun.net.httpserver.nodelay";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private FizzBuzzServer(HttpServer server, ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts a server listening on the port that serves ranges of up to
+     * {@link #DEFAULT_MAX_VALUES} values.
+     * @param port The port, or 0 for any free port.
+     * @param threads The number of threads handling requests.
+     * @return The running server.
+     * @throws IOException if the server cannot listen on the port.
+     */
+    public static FizzBuzzServer start(int port, int threads) throws IOException {
+        return start(port, threads, DEFAULT_MAX_VALUES);
+    }
+
+    /**
+     * Starts a server listening on the port.
+     * @param port The port, or 0 for any free port.
+     * @param threads The number of threads handling requests.
+     * @param maxValues The most values a request may ask for.
+     * @return The running server.
+     * @throws IOException if the server cannot listen on the port.
+     */
+    public static FizzBuzzServer start(int port, int threads, long maxValues) throws IOException {
+        checkArgument(threads > 0, "Threads must be positive - threads(%s)", threads);
+        checkArgument(maxValues > 0, "Max values must be positive - maxValues(%s)", maxValues);
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        ExecutorService executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * QUEUE_PER_THREAD), new Unavailable());
+        server.createContext(PATH, exchange -> executor.execute(new Request(exchange, maxValues)));
+        server.start();
+        return new FizzBuzzServer(server, executor);
+    }
+
+    /**
+     * The address the server is listening on.
+     * @return the socket address
+     */
+    public InetSocketAddress address() {
+        return server.getAddress();
+    }
+
+    /**
+     * Stops taking requests, answering new ones with 503, and stops the
+     * server once requests in progress and queued have completed,
+     * waiting at most {@link #STOP_SECONDS} for them before closing
+     * their connections.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(STOP_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * Starts a server from command line arguments of the form
+     * '--serve [--port port] [--threads threads] [--max-values values]'.
+     * @param args The command line arguments.
+     * @throws IOException if the server cannot be started.
+     */
+    static void serve(String[] args) throws IOException {
+        int port = DEFAULT_PORT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long maxValues = DEFAULT_MAX_VALUES;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--port") && i + 1 < args.length) port = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--threads") && i + 1 < args.length) threads = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--max-values") && i + 1 < args.length) maxValues = Long.parseLong(args[++i]);
+        }
+        disableNagle();
+        FizzBuzzServer server = start(port, threads, maxValues);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        System.out.println("Serving FizzBuzz at http://localhost:" + server.address().getPort() + PATH);
+    }
+
+    /**
+     * Disables Nagle's algorithm for servers in this JVM unless
+     * sun.net.httpserver.nodelay is already set. The JDK server reads
+     * the property once, when the first server is created, so this is
+     * for launchers to call before starting any server.
+     */
+    static void disableNagle() {
+        if (System.getProperty(NO_DELAY) == null) System.setProperty(NO_DELAY, "true");
+    }
+
+    private static void handle(HttpExchange exchange, long maxValues) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                respond(exchange, 405, "Method must be GET");
+                return;
+            }
+            FizzBuzz fizzBuzz;
+            try {
+                fizzBuzz = fizzBuzz(parameters(exchange.getRequestURI()));
+                checkArgument(fizzBuzz.size() <= maxValues,
+                        "Range must be at most %s values - values(%s)", maxValues, fizzBuzz.size());
+            } catch (IllegalArgumentException e) {
+                respond(exchange, 400, e.getMessage());
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", TEXT);
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream body = exchange.getResponseBody()) {
+                fizzBuzz.writeTo(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Handles a request on a thread of the pool.
+     */
+    private static final class Request implements Runnable {
+
+        private final HttpExchange exchange;
+        private final long maxValues;
+
+        private Request(HttpExchange exchange, long maxValues) {
+            this.exchange = exchange;
+            this.maxValues = maxValues;
+        }
+
+        @Override
+        public void run() {
+            try {
+                handle(exchange, maxValues);
+            } catch (IOException e) {
+                // The exchange is closed and the client will see the connection end.
+            }
+        }
+    }
+
+    /**
+     * Answers requests that the pool has no room for with a 503
+     * response on the thread accepting connections and closes them.
+     */
+    private static final class Unavailable implements RejectedExecutionHandler {
+
+        @Override
+        public void rejectedExecution(Runnable request, ThreadPoolExecutor executor) {
+            HttpExchange exchange = ((Request) request).exchange;
+            try {
+                exchange.getResponseHeaders().set("Retry-After", String.valueOf(RETRY_AFTER_SECONDS));
+                respond(exchange, 503, "Server is busy");
+            } catch (IOException e) {
+                // The client has gone, so there is no one to tell.
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+
+    private static FizzBuzz fizzBuzz(Map<String, String> parameters) {
+        FizzBuzz.Builder builder = new FizzBuzz.Builder();
+        if (parameters.containsKey("from")) builder.from(number(parameters, "from"));
+        if (parameters.containsKey("to")) builder.to(number(parameters, "to"));
+        if (flag(parameters, "luck")) builder.withOverrideRule(LUCK_RULE);
+        if (flag(parameters, "stats")) builder.withStatistics();
+        return builder.build();
+    }
+
+    private static long number(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(format("%s must be a number - %s(%s)", name, name, value), e);
+        }
+    }
+
+    private static boolean flag(Map<String, String> parameters, String name) {
+        String value = parameters.getOrDefault(name, "false");
+        checkArgument(value.equals("true") || value.equals("false"), "%s must be true or false - %s(%s)", name, name, value);
+        return value.equals("true");
+    }
+
+    private static Map<String, String> parameters(URI uri) throws UnsupportedEncodingException {
+        Map<String, String> parameters = new HashMap<>();
+        String query = uri.getRawQuery();
+        if (query == null || query.isEmpty()) return parameters;
+        for (String parameter : query.split("&")) {
+            int equals = parameter.indexOf('=');
+            String name = (equals < 0) ? parameter : parameter.substring(0, equals);
+            String value = (equals < 0) ? "" : parameter.substring(equals + 1);
+            parameters.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+        }
+        return parameters;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] bytes = message.getBytes(UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", TEXT);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.agilesphere;
+
+/**
+ * Interfaces for publishing items to subscribers that signal demand,
+ * with the same methods and contracts as the Reactive Streams interfaces
+ * in {@code java.util.concurrent.Flow} of later Java versions, so that a
+ * subscriber can be adapted to either with a one line wrapper.
+ */
+public final class Flow {
+
+    private Flow() {}
+
+    /**
+     * A producer of items that subscribers receive no faster than
+     * they request them.
+     * @param <T> The type of item published.
+     */
+    public interface Publisher<T> {
+
+        /**
+         * Adds the subscriber, which is then passed its subscription
+         * through {@link Subscriber#onSubscribe(Subscription)}.
+         * @param subscriber The subscriber.
+         */
+        void subscribe(Subscriber<? super T> subscriber);
+    }
+
+    /**
+     * A receiver of items from a publisher.
+     * @param <T> The type of item received.
+     */
+    public interface Subscriber<T> {
+
+        /**
+         * Called before any other method with the subscription
+         * through which items are requested.
+         * @param subscription The subscription.
+         */
+        void onSubscribe(Subscription subscription);
+
+        /**
+         * Called with the next item once it has been requested.
+         * @param item The item.
+         */
+        void onNext(T item);
+
+        /**
+         * Called once when the subscription fails, after which
+         * no other method is called.
+         * @param throwable The failure.
+         */
+        void onError(Throwable throwable);
+
+        /**
+         * Called once when every item has been published, after
+         * which no other method is called.
+         */
+        void onComplete();
+    }
+
+    /**
+     * The link between a publisher and one subscriber.
+     */
+    public interface Subscription {
+
+        /**
+         * Adds to the number of items the subscriber can receive.
+         * A request that is not positive fails the subscription.
+         * @param n The number of items.
+         */
+        void request(long n);
+
+        /**
+         * Stops the subscriber receiving further items.
+         */
+        void cancel();
+    }
+}
@@ -0,0 +1,322 @@
+package com.agilesphere;
+
+import com.google.common.collect.ImmutableMap;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+
+/**
+ * Process wide counters and latency histograms for FizzBuzz instances
+ * built {@link FizzBuzz.Builder#withInstrumentation() with instrumentation}.
+ * Rule matches and evaluations are taken from the statistics counted
+ * while generating, and latencies and output sizes are recorded once per
+ * call, so nothing is recorded per value and instances without
+ * instrumentation record nothing at all. Counters are striped so that
+ * concurrent instances do not contend. The live counters are registered
+ * as an MXBean named {@value #OBJECT_NAME} and can be read as a snapshot.
+ */
+public final class Instrumentation implements InstrumentationMXBean {
+
+    public static final String OBJECT_NAME = "com.agilesphere:type=FizzBuzz";
+
+    private static final Instrumentation SHARED = new Instrumentation();
+
+    private final ConcurrentMap<String, LongAdder> matches = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> evaluations = new ConcurrentHashMap<>();
+    private final LongAdder values = new LongAdder();
+    private final LongAdder outputBytes = new LongAdder();
+    private final LongAdder generationNanos = new LongAdder();
+    private final LatencyHistogram generation = new LatencyHistogram();
+    private final LatencyHistogram statistics = new LatencyHistogram();
+    private final LatencyHistogram formatting = new LatencyHistogram();
+    private final AtomicBoolean registered = new AtomicBoolean();
+
+    private Instrumentation() {}
+
+    /**
+     * The instrumentation shared by all instrumented FizzBuzz instances,
+     * registered with the platform MBean server on first use.
+     * @return the shared instrumentation
+     */
+    static Instrumentation shared() {
+        SHARED.register();
+        return SHARED;
+    }
+
+    /**
+     * A consistent enough copy of the counters, taken without stopping
+     * instances that are recording.
+     * @return the current instrumentation values
+     */
+    public static Snapshot snapshot() {
+        return SHARED.current();
+    }
+
+    /**
+     * Records generating output for a range.
+     * @param values The number of values in the range.
+     * @param nanos The time taken to generate, in nanoseconds.
+     * @param counts The statistics counted while generating.
+     */
+    void generated(long values, long nanos, Statistics counts) {
+        this.values.add(values);
+        generationNanos.add(nanos);
+        generation.record(nanos);
+        long evaluated = values;
+        for (int i = 0; i < counts.size(); i++) {
+            String key = counts.key(i);
+            if (i < counts.size() - 1) counter(evaluations, key).add(evaluated);
+            counter(matches, key).add(counts.count(i));
+            evaluated -= counts.count(i);
+        }
+    }
+
+    /**
+     * Records counting statistics without generating output.
+     * @param nanos The time taken to count, in nanoseconds.
+     */
+    void counted(long nanos) {
+        statistics.record(nanos);
+    }
+
+    /**
+     * Records formatting statistics as text.
+     * @param nanos The time taken to format, in nanoseconds.
+     */
+    void formatted(long nanos) {
+        formatting.record(nanos);
+    }
+
+    /**
+     * Records output bytes written.
+     * @param bytes The number of bytes.
+     */
+    void wrote(long bytes) {
+        outputBytes.add(bytes);
+    }
+
+    @Override
+    public Map<String, Long> getRuleMatches() {
+        return current().getRuleMatches();
+    }
+
+    @Override
+    public Map<String, Long> getRuleEvaluations() {
+        return current().getRuleEvaluations();
+    }
+
+    @Override
+    public long getValues() {
+        return values.sum();
+    }
+
+    @Override
+    public long getOutputBytes() {
+        return outputBytes.sum();
+    }
+
+    @Override
+    public double getValuesPerSecond() {
+        return current().getValuesPerSecond();
+    }
+
+    @Override
+    public double getOutputBytesPerSecond() {
+        return current().getOutputBytesPerSecond();
+    }
+
+    @Override
+    public Latency getGenerationLatency() {
+        return generation.summary();
+    }
+
+    @Override
+    public Latency getStatisticsLatency() {
+        return statistics.summary();
+    }
+
+    @Override
+    public Latency getFormattingLatency() {
+        return formatting.summary();
+    }
+
+    private Snapshot current() {
+        return new Snapshot(sums(matches), sums(evaluations), values.sum(), outputBytes.sum(),
+                generationNanos.sum(), generation.summary(), statistics.summary(), formatting.summary());
+    }
+
+    private void register() {
+        if (!registered.compareAndSet(false, true)) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            // registered by another class loader
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register " + OBJECT_NAME, e);
+        }
+    }
+
+    private static LongAdder counter(ConcurrentMap<String, LongAdder> counters, String key) {
+        LongAdder counter = counters.get(key);
+        return (counter != null) ? counter : counters.computeIfAbsent(key, k -> new LongAdder());
+    }
+
+    private static Map<String, Long> sums(Map<String, LongAdder> counters) {
+        ImmutableMap.Builder<String, Long> sums = ImmutableMap.builder();
+        counters.forEach((key, counter) -> sums.put(key, counter.sum()));
+        return sums.build();
+    }
+
+    /**
+     * Instrumentation values at a point in time.
+     */
+    public static final class Snapshot implements InstrumentationMXBean {
+
+        private final Map<String, Long> ruleMatches;
+        private final Map<String, Long> ruleEvaluations;
+        private final long values;
+        private final long outputBytes;
+        private final long generationNanos;
+        private final Latency generationLatency;
+        private final Latency statisticsLatency;
+        private final Latency formattingLatency;
+
+        private Snapshot(Map<String, Long> ruleMatches, Map<String, Long> ruleEvaluations, long values,
+                         long outputBytes, long generationNanos, Latency generationLatency,
+                         Latency statisticsLatency, Latency formattingLatency) {
+            this.ruleMatches = ruleMatches;
+            this.ruleEvaluations = ruleEvaluations;
+            this.values = values;
+            this.outputBytes = outputBytes;
+            this.generationNanos = generationNanos;
+            this.generationLatency = generationLatency;
+            this.statisticsLatency = statisticsLatency;
+            this.formattingLatency = formattingLatency;
+        }
+
+        @Override
+        public Map<String, Long> getRuleMatches() {
+            return ruleMatches;
+        }
+
+        @Override
+        public Map<String, Long> getRuleEvaluations() {
+            return ruleEvaluations;
+        }
+
+        @Override
+        public long getValues() {
+            return values;
+        }
+
+        @Override
+        public long getOutputBytes() {
+            return outputBytes;
+        }
+
+        @Override
+        public double getValuesPerSecond() {
+            return perSecond(values);
+        }
+
+        @Override
+        public double getOutputBytesPerSecond() {
+            return perSecond(outputBytes);
+        }
+
+        @Override
+        public Latency getGenerationLatency() {
+            return generationLatency;
+        }
+
+        @Override
+        public Latency getStatisticsLatency() {
+            return statisticsLatency;
+        }
+
+        @Override
+        public Latency getFormattingLatency() {
+            return formattingLatency;
+        }
+
+        private double perSecond(long amount) {
+            return (generationNanos == 0) ? 0 : amount * 1e9 / generationNanos;
+        }
+
+        @Override
+        public String toString() {
+            return toStringHelper(getClass())
+                    .add("ruleMatches", ruleMatches)
+                    .add("ruleEvaluations", ruleEvaluations)
+                    .add("values", values)
+                    .add("outputBytes", outputBytes)
+                    .add("valuesPerSecond", getValuesPerSecond())
+                    .add("outputBytesPerSecond", getOutputBytesPerSecond())
+                    .add("generationLatency", generationLatency)
+                    .add("statisticsLatency", statisticsLatency)
+                    .add("formattingLatency", formattingLatency)
+                    .toString();
+        }
+    }
+
+    /**
+     * A summary of recorded latencies in nanoseconds. Percentiles are
+     * upper bounds accurate to within a factor of two.
+     */
+    public static final class Latency {
+
+        private final long count;
+        private final long mean;
+        private final long p50;
+        private final long p99;
+        private final long max;
+
+        Latency(long count, long mean, long p50, long p99, long max) {
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p99 = p99;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMean() {
+            return mean;
+        }
+
+        public long getP50() {
+            return p50;
+        }
+
+        public long getP99() {
+            return p99;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return toStringHelper(getClass())
+                    .add("count", count)
+                    .add("mean", mean)
+                    .add("p50", p50)
+                    .add("p99", p99)
+                    .add("max", max)
+                    .toString();
+        }
+    }
+}
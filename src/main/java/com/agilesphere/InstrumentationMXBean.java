@@ -0,0 +1,66 @@
+package com.agilesphere;
+
+import java.util.Map;
+
+/**
+ * The JMX view of FizzBuzz {@link Instrumentation}.
+ */
+public interface InstrumentationMXBean {
+
+    /**
+     * How many values each rule matched, keyed by rule result,
+     * with values that matched no rule counted as 'number'.
+     * @return matches by rule result
+     */
+    Map<String, Long> getRuleMatches();
+
+    /**
+     * How many values each rule was evaluated for, keyed by rule
+     * result. A rule is evaluated for every value that no rule
+     * of higher precedence matched.
+     * @return evaluations by rule result
+     */
+    Map<String, Long> getRuleEvaluations();
+
+    /**
+     * The number of values output has been generated for.
+     * @return the generated value count
+     */
+    long getValues();
+
+    /**
+     * The number of output bytes written, as UTF-8.
+     * @return the output byte count
+     */
+    long getOutputBytes();
+
+    /**
+     * Generated values per second of generation time.
+     * @return the generation throughput in values
+     */
+    double getValuesPerSecond();
+
+    /**
+     * Output bytes per second of generation time.
+     * @return the generation throughput in bytes
+     */
+    double getOutputBytesPerSecond();
+
+    /**
+     * Latencies of generating output, excluding statistics formatting.
+     * @return the generation latency summary
+     */
+    Instrumentation.Latency getGenerationLatency();
+
+    /**
+     * Latencies of counting statistics without generating output.
+     * @return the statistics latency summary
+     */
+    Instrumentation.Latency getStatisticsLatency();
+
+    /**
+     * Latencies of formatting statistics as text.
+     * @return the formatting latency summary
+     */
+    Instrumentation.Latency getFormattingLatency();
+}
@@ -0,0 +1,61 @@
+package com.agilesphere;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrent histogram of latencies in nanoseconds with one striped
+ * counter per power of two, so recording is a handful of uncontended
+ * additions and percentiles are accurate to within a factor of two.
+ */
+final class LatencyHistogram {
+
+    private final LongAdder[] buckets = new LongAdder[Long.SIZE];
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records a latency.
+     * @param nanos The latency in nanoseconds.
+     */
+    void record(long nanos) {
+        long latency = Math.max(0, nanos);
+        buckets[Long.SIZE - 1 - Long.numberOfLeadingZeros(latency | 1)].increment();
+        total.add(latency);
+        max.accumulate(latency);
+    }
+
+    /**
+     * Summarises the latencies recorded so far.
+     * @return the latency summary
+     */
+    Instrumentation.Latency summary() {
+        long[] counts = new long[buckets.length];
+        long recorded = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+            recorded += counts[i];
+        }
+        long mean = (recorded == 0) ? 0 : total.sum() / recorded;
+        long largest = max.get();
+        return new Instrumentation.Latency(recorded, mean,
+                Math.min(largest, percentile(counts, recorded, 0.5)),
+                Math.min(largest, percentile(counts, recorded, 0.99)), largest);
+    }
+
+    private static long percentile(long[] counts, long recorded, double percentile) {
+        long rank = (long) Math.ceil(recorded * percentile);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0) return (i >= Long.SIZE - 2) ? Long.MAX_VALUE : (2L << i) - 1;
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,155 @@
+package com.agilesphere;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntFunction;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * Writes a range to a file through memory mapped regions. The exact byte
+ * length of each region of values is calculated up front from digit
+ * counts and rule result lengths, so the file can be presized and every
+ * region mapped at its final offset and filled independently, in parallel
+ * when more than one thread is available. Output text is never held on
+ * the heap beyond the fixed size encoding buffer of each region.
+ */
+final class MappedFileWriter {
+
+    static final int REGION_SIZE = 1 << 20;
+
+    private final RuleSet ruleSet;
+    private final int parallelism;
+
+    /**
+     * Creates a writer for the rule set.
+     * @param ruleSet The rules to classify values with.
+     * @param parallelism The number of regions to fill concurrently.
+     */
+    MappedFileWriter(RuleSet ruleSet, int parallelism) {
+        this.ruleSet = ruleSet;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Writes the range to the file, replacing any existing content.
+     * @param from The start value of the range.
+     * @param to The end value of the range.
+     * @param withStatistics Whether to append statistics.
+     * @param path The file to write.
+     * @return The statistics for the range.
+     * @throws IOException if the file cannot be written.
+     */
+    Statistics write(long from, long to, boolean withStatistics, Path path) throws IOException {
+        long regionCount = (to - from) / REGION_SIZE + 1;
+        checkArgument(regionCount <= Integer.MAX_VALUE, "Range is too large to write to a file - from(%s) to(%s)", from, to);
+        int regions = (int) regionCount;
+        ForkJoinPool pool = (parallelism > 1 && regions > 1) ? new ForkJoinPool(parallelism) : null;
+        try (FileChannel channel = FileChannel.open(path, CREATE, TRUNCATE_EXISTING, READ, WRITE)) {
+            List<Measured> layout = inRegions(pool, regions, region ->
+                    () -> measure(regionFrom(from, region), regionTo(from, to, region)));
+
+            long[] offsets = new long[regions + 1];
+            Statistics statistics = ruleSet.newStatistics();
+            for (int region = 0; region < regions; region++) {
+                Measured measured = layout.get(region);
+                long separator = (region > 0) ? 1 : 0;
+                offsets[region + 1] = offsets[region] + separator + measured.length;
+                statistics.add(measured.statistics);
+            }
+            byte[] statisticsBytes = withStatistics
+                    ? (FizzBuzz.LINE_SEPARATOR + statistics.format()).getBytes(UTF_8)
+                    : new byte[0];
+            long size = offsets[regions] + statisticsBytes.length;
+            channel.write(ByteBuffer.wrap(new byte[1]), size - 1);
+
+            inRegions(pool, regions, region -> () -> fill(channel, offsets[region], offsets[region + 1],
+                    regionFrom(from, region), regionTo(from, to, region), region > 0));
+            if (statisticsBytes.length > 0) {
+                channel.map(READ_WRITE, offsets[regions], statisticsBytes.length).put(statisticsBytes);
+            }
+            return statistics;
+        } finally {
+            if (pool != null) pool.shutdownNow();
+        }
+    }
+
+    private Measured measure(long from, long to) {
+        Statistics statistics = ruleSet.newStatistics();
+        long length = ruleSet.length(from, to, statistics);
+        return new Measured(length, statistics);
+    }
+
+    private Void fill(FileChannel channel, long start, long end, long from, long to, boolean separate) {
+        try {
+            MappedByteBuffer region = channel.map(READ_WRITE, start, end - start);
+            if (separate) region.put((byte) ' ');
+            TokenEncoder encoder = new TokenEncoder(ruleSet.results(), region::put);
+            ruleSet.render(from, to, encoder, ruleSet.newStatistics());
+            encoder.flush();
+            checkState(!region.hasRemaining(), "Region of %s bytes not filled at offset %s", end - start, start);
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static <T> List<T> inRegions(ForkJoinPool pool, int regions, IntFunction<Callable<T>> task) {
+        List<T> results = new ArrayList<>(regions);
+        if (pool == null) {
+            for (int region = 0; region < regions; region++) {
+                results.add(call(task.apply(region)));
+            }
+            return results;
+        }
+        List<ForkJoinTask<T>> tasks = new ArrayList<>(regions);
+        for (int region = 0; region < regions; region++) {
+            tasks.add(pool.submit(task.apply(region)));
+        }
+        tasks.forEach(submitted -> results.add(submitted.join()));
+        return results;
+    }
+
+    private static <T> T call(Callable<T> callable) {
+        try {
+            return callable.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static long regionFrom(long from, int region) {
+        return from + (long) region * REGION_SIZE;
+    }
+
+    private static long regionTo(long from, long to, int region) {
+        long regionFrom = regionFrom(from, region);
+        return (to - regionFrom < REGION_SIZE) ? to : regionFrom + REGION_SIZE - 1;
+    }
+
+    private static final class Measured {
+
+        private final long length;
+        private final Statistics statistics;
+
+        private Measured(long length, Statistics statistics) {
+            this.length = length;
+            this.statistics = statistics;
+        }
+    }
+}
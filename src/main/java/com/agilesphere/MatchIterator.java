@@ -0,0 +1,147 @@
+package com.agilesphere;
+
+import com.agilesphere.rules.ContainsDigitRule;
+import com.agilesphere.rules.Rule;
+import com.google.common.primitives.Ints;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+import static com.agilesphere.utils.DecimalBlocks.contains;
+import static com.agilesphere.utils.DecimalBlocks.nextContaining;
+import static com.agilesphere.utils.DecimalBlocks.nextWithout;
+
+/**
+ * Iterates lazily over the values of a range whose winning rule is one
+ * of a set of target rules, stepping between candidate values instead of
+ * classifying every value. Candidates for a tabled rule are the residues
+ * of the cycle that the rule wins, reached by jumping between them, and
+ * candidates for a base 10 digit rule are found block by block with
+ * {@link com.agilesphere.utils.DecimalBlocks}. Blocks of values that a
+ * digit rule of higher precedence than every target shadows are skipped
+ * whole. Each candidate is classified to confirm that a target wins, so
+ * precedence is respected, and the cost is proportional to the number of
+ * candidates rather than the size of the range. Targets that are neither
+ * tabled nor base 10 digit rules leave every value a candidate.
+ */
+final class MatchIterator implements PrimitiveIterator.OfLong {
+
+    private final RuleTable ruleTable;
+    private final boolean[] targets;
+    private final long to;
+    private final int[] residues;
+    private final int[] digits;
+    private final int[] shadowingDigits;
+    private final boolean scans;
+    private long next;
+
+    /**
+     * Creates an iterator over the range.
+     * @param ruleTable The compiled rules.
+     * @param rules The rules in order of precedence.
+     * @param targets Whether each rule index, or the rule count for numbers, is a target.
+     * @param from The start value of the range.
+     * @param to The end value of the range.
+     */
+    MatchIterator(RuleTable ruleTable, List<Rule> rules, boolean[] targets, long from, long to) {
+        this.ruleTable = ruleTable;
+        this.targets = targets;
+        this.to = to;
+        List<Integer> residues = new ArrayList<>();
+        for (int residue = 0; residue < ruleTable.cycle(); residue++) {
+            if (targets[ruleTable.winner(residue)]) residues.add(residue);
+        }
+        this.residues = Ints.toArray(residues);
+        List<Integer> digits = new ArrayList<>();
+        List<Integer> shadowingDigits = new ArrayList<>();
+        boolean scans = targets[rules.size()];
+        for (int i = 0; i < rules.size(); i++) {
+            if (ruleTable.isTabled(i)) continue;
+            int digit = decimalDigit(rules.get(i));
+            if (targets[i]) {
+                if (digit < 0) scans = true;
+                else digits.add(digit);
+            } else if (digit >= 0 && before(i, targets)) {
+                shadowingDigits.add(digit);
+            }
+        }
+        this.digits = Ints.toArray(digits);
+        this.shadowingDigits = Ints.toArray(shadowingDigits);
+        this.scans = scans;
+        this.next = find(from);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != 0;
+    }
+
+    @Override
+    public long nextLong() {
+        if (next == 0) throw new NoSuchElementException();
+        long value = next;
+        next = (value == to) ? 0 : find(value + 1);
+        return value;
+    }
+
+    private long find(long from) {
+        long value = from;
+        while (true) {
+            long candidate = candidate(value);
+            if (candidate == 0 || candidate > to) return 0;
+            long unshadowed = unshadowed(candidate);
+            if (unshadowed != candidate) {
+                if (unshadowed == 0) return 0;
+                value = unshadowed;
+                continue;
+            }
+            if (targets[ruleTable.ruleIndex(candidate, ruleTable.residueOf(candidate))]) return candidate;
+            if (candidate == to) return 0;
+            value = candidate + 1;
+        }
+    }
+
+    private long candidate(long value) {
+        if (scans) return value;
+        long best = nextResidue(value);
+        for (int digit : digits) {
+            long candidate = nextContaining(value, digit);
+            if (candidate != 0 && (best == 0 || candidate < best)) best = candidate;
+        }
+        return best;
+    }
+
+    private long nextResidue(long value) {
+        if (residues.length == 0) return 0;
+        int residue = ruleTable.residueOf(value);
+        int position = Arrays.binarySearch(residues, residue);
+        if (position >= 0) return value;
+        position = -position - 1;
+        long next = (position < residues.length)
+                ? value + (residues[position] - residue)
+                : value + (ruleTable.cycle() - residue + residues[0]);
+        return (next < 0) ? 0 : next;
+    }
+
+    private long unshadowed(long value) {
+        for (int digit : shadowingDigits) {
+            if (contains(value, digit)) return nextWithout(value, digit);
+        }
+        return value;
+    }
+
+    private static boolean before(int index, boolean[] targets) {
+        for (int i = 0; i <= index; i++) {
+            if (targets[i]) return false;
+        }
+        return true;
+    }
+
+    private static int decimalDigit(Rule rule) {
+        if (!(rule instanceof ContainsDigitRule) || ((ContainsDigitRule) rule).base() != 10) return -1;
+        return ((ContainsDigitRule) rule).digit();
+    }
+}
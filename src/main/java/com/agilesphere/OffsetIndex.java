@@ -0,0 +1,167 @@
+package com.agilesphere;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Maps between values and the byte offsets of their tokens in the UTF-8
+ * encoded output of a range, without rendering the range. When the rules
+ * can be counted in closed form the offset of a value is the rendered
+ * length of the values before it. Otherwise a sparse index of offsets at
+ * regular checkpoints is built by one measuring pass over the range and
+ * offsets are found by measuring forward from the nearest checkpoint.
+ */
+final class OffsetIndex {
+
+    static final int CHECKPOINT_INTERVAL = 1 << 12;
+
+    private final RuleSet ruleSet;
+    private final long from;
+    private final long to;
+    private volatile long[] checkpoints;
+
+    /**
+     * Creates an index for the range.
+     * @param ruleSet The rules to classify values with.
+     * @param from The start value of the range.
+     * @param to The end value of the range.
+     */
+    OffsetIndex(RuleSet ruleSet, long from, long to) {
+        this.ruleSet = ruleSet;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * The byte offset of the first byte of the token for a value.
+     * @param value A value in the range.
+     * @return the byte offset
+     */
+    long offsetOf(long value) {
+        if (ruleSet.countsInClosedForm()) return offsetAfter(from, 0, value);
+        int checkpoint = (int) ((value - from) / CHECKPOINT_INTERVAL);
+        long checkpointValue = from + (long) checkpoint * CHECKPOINT_INTERVAL;
+        return offsetAfter(checkpointValue, checkpoints()[checkpoint], value);
+    }
+
+    /**
+     * The number of bytes in the output before any statistics.
+     * @return the length of the rendered range in bytes
+     */
+    long length() {
+        return offsetOf(to) + ruleSet.tokenLength(ruleSet.ruleIndex(to), to);
+    }
+
+    /**
+     * The value whose token, or the separator that follows it,
+     * contains the byte at the offset.
+     * @param offset A byte offset less than {@link #length()}.
+     * @return the value
+     */
+    long valueAt(long offset) {
+        if (!ruleSet.countsInClosedForm()) {
+            long[] checkpoints = checkpoints();
+            int checkpoint = lastAtOrBefore(checkpoints, offset);
+            long start = from + (long) checkpoint * CHECKPOINT_INTERVAL;
+            long end = Math.min(to, start + CHECKPOINT_INTERVAL - 1);
+            return scan(start, end, checkpoints[checkpoint], offset);
+        }
+        long low = from;
+        long high = to;
+        while (low < high) {
+            long middle = low + (high - low + 1) / 2;
+            if (offsetOf(middle) <= offset) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Renders the bytes between the offsets, generating only
+     * the tokens that overlap them.
+     * @param startByte The offset of the first byte, inclusive.
+     * @param endByte The offset of the last byte, exclusive, no greater than {@link #length()}.
+     * @param out The destination for the bytes.
+     */
+    void slice(long startByte, long endByte, ByteArrayOutputStream out) {
+        if (startByte == endByte) return;
+        long first = valueAt(startByte);
+        long last = valueAt(endByte - 1);
+        long firstOffset = offsetOf(first);
+        ByteArrayOutputStream tokens = new ByteArrayOutputStream();
+        TokenEncoder encoder = new TokenEncoder(ruleSet.results(),
+                bytes -> tokens.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining()));
+        try {
+            ruleSet.render(first, last, encoder, ruleSet.newStatistics());
+            encoder.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] rendered = tokens.toByteArray();
+        int sliceStart = (int) (startByte - firstOffset);
+        int sliceEnd = (int) (endByte - firstOffset);
+        out.write(rendered, sliceStart, Math.min(sliceEnd, rendered.length) - sliceStart);
+        if (sliceEnd > rendered.length) out.write(' ');
+    }
+
+    private long offsetAfter(long start, long startOffset, long value) {
+        if (value == start) return startOffset;
+        return startOffset + ruleSet.length(start, value - 1, ruleSet.newStatistics()) + 1;
+    }
+
+    private long scan(long start, long end, long startOffset, long offset) {
+        long next = startOffset;
+        for (long value = start; value < end; value++) {
+            next += ruleSet.tokenLength(ruleSet.ruleIndex(value), value) + 1;
+            if (next > offset) return value;
+        }
+        return end;
+    }
+
+    private long[] checkpoints() {
+        long[] result = checkpoints;
+        if (result == null) {
+            result = measureCheckpoints();
+            checkpoints = result;
+        }
+        return result;
+    }
+
+    private long[] measureCheckpoints() {
+        long checkpointCount = (to - from) / CHECKPOINT_INTERVAL + 1;
+        checkState(checkpointCount <= Integer.MAX_VALUE, "Range is too large to index - from(%s) to(%s)", from, to);
+        long[] offsets = new long[(int) checkpointCount];
+        long offset = 0;
+        int checkpoint = 0;
+        int untilCheckpoint = 0;
+        for (long value = from; ; value++) {
+            if (untilCheckpoint-- == 0) {
+                offsets[checkpoint++] = offset;
+                untilCheckpoint = CHECKPOINT_INTERVAL - 1;
+            }
+            offset += ruleSet.tokenLength(ruleSet.ruleIndex(value), value) + 1;
+            if (value == to) break;
+        }
+        return offsets;
+    }
+
+    private static int lastAtOrBefore(long[] offsets, long offset) {
+        int low = 0;
+        int high = offsets.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (offsets[middle] <= offset) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,145 @@
+package com.agilesphere;
+
+import com.google.common.collect.ImmutableList;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The rendered output of a range held as text segments, followed by
+ * the statistics suffix if any, with the rule counters of the whole
+ * range. Each segment is a prefix of a string that was rendered once,
+ * so the output of an instance is a single segment of its own output
+ * text, and extending a rope to a larger range appends one segment for
+ * the new values and adds their counters, sharing the segments already
+ * rendered rather than copying them. The output as a single string is
+ * only built for a rope with more than one segment when it is asked
+ * for.
+ */
+final class OutputRope {
+
+    private final long to;
+    private final List<Segment> segments;
+    private final String suffix;
+    private final Statistics statistics;
+    private volatile String text;
+
+    private OutputRope(long to, List<Segment> segments, String suffix, Statistics statistics, String text) {
+        this.to = to;
+        this.segments = segments;
+        this.suffix = suffix;
+        this.statistics = statistics;
+        this.text = text;
+    }
+
+    /**
+     * A rope of the output text of a whole range.
+     * @param to The end value of the range.
+     * @param text The output text, including any statistics suffix.
+     * @param bodyLength The length of the text before the suffix.
+     * @param statistics The counters of the range.
+     * @return The rope.
+     */
+    static OutputRope of(long to, String text, int bodyLength, Statistics statistics) {
+        return new OutputRope(to, ImmutableList.of(new Segment(text, bodyLength)),
+                text.substring(bodyLength), statistics, text);
+    }
+
+    /**
+     * A rope extended to a larger range by the text of the values after
+     * the end of this rope, with a leading separator.
+     * @param to The end value of the extended range.
+     * @param text The text of the new values, including any statistics
+     *             suffix for the extended range.
+     * @param bodyLength The length of the text before the suffix.
+     * @param statistics The counters of the extended range.
+     * @return The extended rope.
+     */
+    OutputRope append(long to, String text, int bodyLength, Statistics statistics) {
+        List<Segment> extended = ImmutableList.<Segment>builder()
+                .addAll(segments)
+                .add(new Segment(text, bodyLength))
+                .build();
+        return new OutputRope(to, extended, text.substring(bodyLength), statistics, null);
+    }
+
+    /**
+     * The end value of the range.
+     * @return the end value
+     */
+    long to() {
+        return to;
+    }
+
+    /**
+     * Adds the counters of the range to the statistics.
+     * @param statistics The statistics to add to.
+     */
+    void addCountsTo(Statistics statistics) {
+        statistics.add(this.statistics);
+    }
+
+    /**
+     * Writes the output text without the statistics suffix.
+     * @param sink The sink to write to.
+     * @throws IOException if the sink cannot be written to.
+     */
+    void writeBodyTo(TokenSink sink) throws IOException {
+        for (Segment segment : segments) {
+            write(segment.text, segment.length, sink);
+        }
+    }
+
+    /**
+     * Writes the output text followed by the statistics suffix.
+     * @param sink The sink to write to.
+     * @throws IOException if the sink cannot be written to.
+     */
+    void writeTo(TokenSink sink) throws IOException {
+        String cached = text;
+        if (cached != null) {
+            write(cached, cached.length(), sink);
+        } else {
+            writeBodyTo(sink);
+            write(suffix, suffix.length(), sink);
+        }
+    }
+
+    @Override
+    public String toString() {
+        String cached = text;
+        if (cached == null) {
+            StringBuilder builder = new StringBuilder();
+            for (Segment segment : segments) {
+                builder.append(segment.text, 0, segment.length);
+            }
+            cached = builder.append(suffix).toString();
+            text = cached;
+        }
+        return cached;
+    }
+
+    private static void write(String text, int length, TokenSink sink) throws IOException {
+        int start = 0;
+        while (start < length) {
+            int end = Math.min(start + FizzBuzz.BUFFER_SIZE, length);
+            if (Character.isHighSurrogate(text.charAt(end - 1)) && end < length) end++;
+            sink.text(text.substring(start, end));
+            start = end;
+        }
+    }
+
+    /**
+     * A prefix of a rendered string.
+     */
+    private static final class Segment {
+
+        private final String text;
+        private final int length;
+
+        private Segment(String text, int length) {
+            this.text = text;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.agilesphere;
+
+import com.agilesphere.TokenEncoder.ByteSink;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Renders a range across several cores by splitting it into fixed size
+ * chunks that are encoded into their own buffers on a fork join pool.
+ * Chunks are written to the destination in range order, so the output is
+ * identical to rendering the range sequentially, and at most a bounded
+ * window of chunks is held in memory at once. Statistics are counted per
+ * chunk and merged as chunks are written.
+ */
+final class ParallelRenderer {
+
+    static final int CHUNK_SIZE = 1 << 16;
+
+    private static final byte[] SEPARATOR = {' '};
+
+    private final RuleSet ruleSet;
+    private final int parallelism;
+
+    /**
+     * Creates a renderer for the rule set.
+     * @param ruleSet The rules to classify values with.
+     * @param parallelism The number of chunks to render concurrently.
+     */
+    ParallelRenderer(RuleSet ruleSet, int parallelism) {
+        this.ruleSet = ruleSet;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Renders the range to the sink in order.
+     * @param from The start value of the range.
+     * @param to The end value of the range.
+     * @param sink The sink for encoded chunks.
+     * @return The statistics for the range.
+     * @throws IOException if the sink cannot be written to.
+     */
+    Statistics render(long from, long to, ByteSink sink) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            Statistics statistics = ruleSet.newStatistics();
+            Deque<ForkJoinTask<Chunk>> window = new ArrayDeque<>();
+            long next = from;
+            boolean remaining = true;
+            boolean first = true;
+            while (remaining || !window.isEmpty()) {
+                while (remaining && window.size() < 2 * parallelism) {
+                    long chunkFrom = next;
+                    long chunkTo = chunkEnd(chunkFrom, to);
+                    window.add(pool.submit(() -> renderChunk(chunkFrom, chunkTo)));
+                    remaining = chunkTo < to;
+                    next = chunkTo + 1;
+                }
+                Chunk chunk = window.remove().join();
+                if (!first) sink.write(ByteBuffer.wrap(SEPARATOR));
+                first = false;
+                sink.write(chunk.bytes());
+                statistics.add(chunk.statistics);
+            }
+            return statistics;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Counts how often each rule wins over the range, classifying
+     * chunks concurrently with the same bounded window as rendering and
+     * adding each chunk's counts as it completes.
+     * @param from The start value of the range.
+     * @param to The end value of the range.
+     * @return The statistics for the range.
+     */
+    Statistics count(long from, long to) {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            Statistics statistics = ruleSet.newStatistics();
+            Deque<ForkJoinTask<Statistics>> window = new ArrayDeque<>();
+            long next = from;
+            boolean remaining = true;
+            while (remaining || !window.isEmpty()) {
+                while (remaining && window.size() < 2 * parallelism) {
+                    long chunkFrom = next;
+                    long chunkTo = chunkEnd(chunkFrom, to);
+                    window.add(pool.submit(() -> countChunk(chunkFrom, chunkTo)));
+                    remaining = chunkTo < to;
+                    next = chunkTo + 1;
+                }
+                statistics.add(window.remove().join());
+            }
+            return statistics;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static long chunkEnd(long chunkFrom, long to) {
+        return (to - chunkFrom < CHUNK_SIZE) ? to : chunkFrom + CHUNK_SIZE - 1;
+    }
+
+    private Chunk renderChunk(long from, long to) {
+        Chunk chunk = new Chunk(ruleSet.newStatistics());
+        TokenEncoder encoder = new TokenEncoder(ruleSet.results(),
+                bytes -> chunk.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining()));
+        try {
+            ruleSet.render(from, to, encoder, chunk.statistics);
+            encoder.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return chunk;
+    }
+
+    private Statistics countChunk(long from, long to) {
+        Statistics statistics = ruleSet.newStatistics();
+        ruleSet.count(from, to, statistics);
+        return statistics;
+    }
+
+    private static final class Chunk extends ByteArrayOutputStream {
+
+        private final Statistics statistics;
+
+        private Chunk(Statistics statistics) {
+            super(CHUNK_SIZE * 8);
+            this.statistics = statistics;
+        }
+
+        private ByteBuffer bytes() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.agilesphere;
+
+import com.agilesphere.rules.LongRule;
+import com.agilesphere.rules.Rule;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+
+import java.util.List;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A lightweight immutable description of FizzBuzz output for use with
+ * {@link FizzBuzz#evaluateAll(List)}: a range of values, override rules
+ * in order of decreasing precedence and whether to include statistics.
+ * Unlike a FizzBuzz instance a query compiles nothing when created.
+ */
+public final class Query {
+
+    private final long from;
+    private final long to;
+    private final List<Rule> overrideRules;
+    private final boolean withStatistics;
+
+    private Query(long from, long to, List<Rule> overrideRules, boolean withStatistics) {
+        this.from = from;
+        this.to = to;
+        this.overrideRules = overrideRules;
+        this.withStatistics = withStatistics;
+    }
+
+    /**
+     * A query for the range with the core rules only and without statistics.
+     * Both values must be positive and from cannot be bigger than to.
+     * @param from The start value.
+     * @param to The end value.
+     * @return A query for the range
+     */
+    public static Query range(long from, long to) {
+        checkArgument(from > 0 && to > 0, "Inputs must be positive - from(%s) to(%s)", from, to);
+        checkArgument(from <= to, "from(%s) cannot be bigger than to(%s)", from, to);
+        return new Query(from, to, ImmutableList.of(), false);
+    }
+
+    /**
+     * A copy of this query with an override rule of lower precedence than
+     * the override rules already added. Values beyond the range of an int
+     * require the rule to be a {@link LongRule}.
+     * @param rule The override rule.
+     * @return A query with the override rule
+     */
+    public Query withOverrideRule(Rule rule) {
+        checkArgument(to <= Integer.MAX_VALUE || rule instanceof LongRule,
+                "Override rules must be LongRules when to(%s) is bigger than %s", to, Integer.MAX_VALUE);
+        List<Rule> rules = ImmutableList.<Rule>builder().addAll(overrideRules).add(rule).build();
+        return new Query(from, to, rules, withStatistics);
+    }
+
+    /**
+     * A copy of this query whose output includes statistics.
+     * @return A query with statistics
+     */
+    public Query withStatistics() {
+        return new Query(from, to, overrideRules, true);
+    }
+
+    long from() {
+        return from;
+    }
+
+    long to() {
+        return to;
+    }
+
+    List<Rule> overrideRules() {
+        return overrideRules;
+    }
+
+    boolean includesStatistics() {
+        return withStatistics;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof Query)) return false;
+        Query that = (Query) obj;
+        return (this.from == that.from)
+                && (this.to == that.to)
+                && this.overrideRules.equals(that.overrideRules)
+                && (this.withStatistics == that.withStatistics);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(from, to, overrideRules, withStatistics);
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(getClass())
+                .add("from", from)
+                .add("to", to)
+                .add("overrideRules", overrideRules)
+                .add("withStatistics", withStatistics)
+                .toString();
+    }
+}
@@ -0,0 +1,204 @@
+package com.agilesphere;
+
+import com.agilesphere.rules.ContainsDigitRule;
+import com.agilesphere.rules.PeriodicRule;
+import com.agilesphere.rules.Rule;
+
+import static com.agilesphere.RuleTable.MAX_CYCLE;
+import static com.agilesphere.RuleTable.lcm;
+
+/**
+ * Calculates how often each rule wins over a range of values in closed
+ * form, without visiting each value. This is possible when every rule
+ * is either a {@link PeriodicRule}, whose matching depends only on the
+ * value modulo its period, or a base 10 {@link ContainsDigitRule}, whose
+ * matching depends only on the set of digits in the value.
+ *
+ * Each value is reduced to a cell of (value modulo the cycle length, set
+ * of rule digits it contains) and the winning rule for each cell is fixed
+ * by the rule precedence. Cells are counted by floor division when there
+ * are no digit rules and by digit dynamic programming otherwise, so the
+ * cost depends on the number of digits in the range rather than its size.
+ */
+final class RangeCounter {
+
+    private static final int BASE = 10;
+    private static final int MAX_DIGITS = 19;
+    private static final int MAX_CELLS = 1 << 14;
+
+    private final int cycle;
+    private final int[] digitBits;
+    private final int masks;
+    private final int[][] winners;
+    private final int counters;
+    private final int[] powers;
+    private final long[][][] free;
+
+    private RangeCounter(Rule[] rules, int cycle, int[] digitBits, int masks) {
+        this.cycle = cycle;
+        this.digitBits = digitBits;
+        this.masks = masks;
+        this.counters = rules.length + 1;
+        this.winners = new int[cycle][masks];
+        for (int residue = 0; residue < cycle; residue++) {
+            for (int mask = 0; mask < masks; mask++) {
+                winners[residue][mask] = winner(rules, residue, mask);
+            }
+        }
+        this.powers = powersOfBase(MAX_DIGITS);
+        this.free = (masks == 1) ? null : freeSuffixes(MAX_DIGITS, powers);
+    }
+
+    /**
+     * Creates a counter for the rules if every rule can be counted in
+     * closed form, otherwise returns null and the range must be scanned.
+     * @param rules The rules in order of precedence.
+     * @return A range counter or null if the rules are not supported.
+     */
+    static RangeCounter of(Rule[] rules) {
+        int cycle = 1;
+        int[] digitBits = new int[BASE];
+        int masks = 1;
+        for (Rule rule : rules) {
+            if (rule instanceof PeriodicRule) {
+                long lcm = lcm(cycle, ((PeriodicRule) rule).period());
+                if (lcm > MAX_CYCLE || lcm * masks > MAX_CELLS) return null;
+                cycle = (int) lcm;
+            } else if (rule instanceof ContainsDigitRule && ((ContainsDigitRule) rule).base() == BASE) {
+                int digit = ((ContainsDigitRule) rule).digit();
+                if (digitBits[digit] == 0) {
+                    digitBits[digit] = masks;
+                    masks <<= 1;
+                }
+                if ((long) cycle * masks > MAX_CELLS) return null;
+            } else {
+                return null;
+            }
+        }
+        return new RangeCounter(rules, cycle, digitBits, masks);
+    }
+
+    /**
+     * Counts how often each rule wins over the range with the final
+     * counter holding values that did not match any rule.
+     * @param from The start value of the range.
+     * @param to The end value of the range.
+     * @return counters indexed by rule position.
+     */
+    long[] count(long from, long to) {
+        long[][] upToTo = cellsUpTo(to);
+        long[][] belowFrom = cellsUpTo(from - 1);
+        long[] counts = new long[counters];
+        for (int residue = 0; residue < cycle; residue++) {
+            for (int mask = 0; mask < masks; mask++) {
+                counts[winners[residue][mask]] += upToTo[residue][mask] - belowFrom[residue][mask];
+            }
+        }
+        return counts;
+    }
+
+    private int winner(Rule[] rules, int residue, int mask) {
+        for (int i = 0; i < rules.length; i++) {
+            Rule rule = rules[i];
+            if (rule instanceof PeriodicRule) {
+                if (rule.matches(residue == 0 ? cycle : residue)) return i;
+            } else if ((mask & digitBits[((ContainsDigitRule) rule).digit()]) != 0) {
+                return i;
+            }
+        }
+        return rules.length;
+    }
+
+    private long[][] cellsUpTo(long n) {
+        long[][] cells = new long[cycle][masks];
+        if (n <= 0) return cells;
+        if (masks == 1) {
+            countResidues(cells, n);
+        } else {
+            countDigits(cells, n);
+        }
+        return cells;
+    }
+
+    private void countResidues(long[][] cells, long n) {
+        cells[0][0] = n / cycle;
+        for (int residue = 1; residue < cycle && residue <= n; residue++) {
+            cells[residue][0] = (n - residue) / cycle + 1;
+        }
+    }
+
+    private void countDigits(long[][] cells, long n) {
+        int[] digits = digitsOf(n);
+        int length = digits.length;
+
+        for (int shorter = 1; shorter < length; shorter++) {
+            for (int digit = 1; digit < BASE; digit++) {
+                int residue = digit * powers[shorter - 1] % cycle;
+                addSuffixes(cells, residue, digitBits[digit], free[shorter - 1]);
+            }
+        }
+
+        int prefixResidue = 0;
+        int prefixMask = 0;
+        for (int i = 0; i < length; i++) {
+            int remaining = length - 1 - i;
+            int shifted = prefixResidue * powers[remaining + 1] % cycle;
+            for (int digit = (i == 0) ? 1 : 0; digit < digits[i]; digit++) {
+                int residue = (shifted + digit * powers[remaining]) % cycle;
+                addSuffixes(cells, residue, prefixMask | digitBits[digit], free[remaining]);
+            }
+            prefixResidue = (prefixResidue * BASE + digits[i]) % cycle;
+            prefixMask |= digitBits[digits[i]];
+        }
+        cells[prefixResidue][prefixMask]++;
+    }
+
+    private void addSuffixes(long[][] cells, int residue, int mask, long[][] suffixes) {
+        for (int r = 0; r < cycle; r++) {
+            int cellResidue = (residue + r) % cycle;
+            for (int m = 0; m < masks; m++) {
+                cells[cellResidue][mask | m] += suffixes[r][m];
+            }
+        }
+    }
+
+    /**
+     * Counts all digit strings of each length, including leading
+     * zeros, by their residue and the set of rule digits they contain.
+     * The counts depend only on the rules so are calculated once.
+     */
+    private long[][][] freeSuffixes(int length, int[] powers) {
+        long[][][] free = new long[length][cycle][masks];
+        free[0][0][0] = 1;
+        for (int k = 1; k < length; k++) {
+            for (int digit = 0; digit < BASE; digit++) {
+                int leading = digit * powers[k - 1] % cycle;
+                for (int r = 0; r < cycle; r++) {
+                    int residue = (leading + r) % cycle;
+                    for (int m = 0; m < masks; m++) {
+                        free[k][residue][m | digitBits[digit]] += free[k - 1][r][m];
+                    }
+                }
+            }
+        }
+        return free;
+    }
+
+    private int[] powersOfBase(int length) {
+        int[] powers = new int[length + 1];
+        powers[0] = 1 % cycle;
+        for (int k = 1; k <= length; k++) {
+            powers[k] = powers[k - 1] * BASE % cycle;
+        }
+        return powers;
+    }
+
+    private static int[] digitsOf(long n) {
+        char[] chars = Long.toString(n).toCharArray();
+        int[] digits = new int[chars.length];
+        for (int i = 0; i < chars.length; i++) {
+            digits[i] = chars[i] - '0';
+        }
+        return digits;
+    }
+}
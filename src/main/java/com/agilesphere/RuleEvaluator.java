@@ -0,0 +1,94 @@
+package com.agilesphere;
+
+import com.agilesphere.rules.LongRule;
+import com.google.common.base.Throwables;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import static java.lang.invoke.MethodHandles.constant;
+import static java.lang.invoke.MethodHandles.dropArguments;
+import static java.lang.invoke.MethodHandles.guardWithTest;
+import static java.lang.invoke.MethodHandles.insertArguments;
+
+/**
+ * The rules a {@link RuleTable} evaluates for each value, compiled into a
+ * single method handle that tests the rules in order of precedence, with
+ * each rule bound into its own branch. The handle is held in an instance
+ * field rather than a constant, so the JIT does not inline it into the
+ * caller or the rule calls inside it into each other; every evaluation
+ * is an invokeExact of the whole chain. It is still faster than a loop
+ * over the rules through one interface call whose call site sees every
+ * rule class: RuleEvaluatorBenchmark measured 16 ns against 35 ns per
+ * value with three mixed override rules and 23 ns against 74 ns with ten.
+ * A single rule is called directly, under 1 ns against 5 ns for the loop,
+ * as invoking the handle would only add cost.
+ */
+final class RuleEvaluator {
+
+    private static final MethodHandle MATCHES;
+    private static final MethodHandle PRECEDES;
+    private static final MethodHandle WINNER;
+
+    static {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            MATCHES = lookup.findVirtual(LongRule.class, "matches",
+                    MethodType.methodType(boolean.class, long.class));
+            PRECEDES = lookup.findStatic(RuleEvaluator.class, "precedes",
+                    MethodType.methodType(boolean.class, int.class, int.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+        WINNER = dropArguments(MethodHandles.identity(int.class), 0, long.class);
+    }
+
+    private final MethodHandle evaluator;
+    private final LongRule single;
+    private final int singleIndex;
+
+    private RuleEvaluator(MethodHandle evaluator, LongRule single, int singleIndex) {
+        this.evaluator = evaluator;
+        this.single = single;
+        this.singleIndex = singleIndex;
+    }
+
+    /**
+     * Compiles the rules into an evaluator.
+     * @param rules The rules in order of precedence.
+     * @param indices The index of each rule in the whole rule set.
+     * @return The compiled evaluator.
+     */
+    static RuleEvaluator compile(LongRule[] rules, int[] indices) {
+        if (rules.length == 1) return new RuleEvaluator(null, rules[0], indices[0]);
+        MethodHandle evaluator = WINNER;
+        for (int i = rules.length - 1; i >= 0; i--) {
+            MethodHandle matches = dropArguments(MATCHES.bindTo(rules[i]), 1, int.class);
+            MethodHandle index = dropArguments(constant(int.class, indices[i]), 0, long.class, int.class);
+            MethodHandle precedes = dropArguments(insertArguments(PRECEDES, 0, indices[i]), 0, long.class);
+            evaluator = guardWithTest(precedes, guardWithTest(matches, index, evaluator), WINNER);
+        }
+        return new RuleEvaluator(evaluator, null, -1);
+    }
+
+    /**
+     * Finds the first rule that matches the value and takes precedence
+     * over the winner.
+     * @param value The value to classify.
+     * @param winner The index of the rule that wins if no rule before it matches.
+     * @return the winning rule index
+     */
+    int ruleIndex(long value, int winner) {
+        if (single != null) return (singleIndex < winner && single.matches(value)) ? singleIndex : winner;
+        try {
+            return (int) evaluator.invokeExact(value, winner);
+        } catch (Throwable t) {
+            throw Throwables.propagate(t);
+        }
+    }
+
+    private static boolean precedes(int index, int winner) {
+        return index < winner;
+    }
+}
@@ -0,0 +1,253 @@
+package com.agilesphere;
+
+import com.agilesphere.rules.Rule;
+import com.agilesphere.utils.DecimalOdometer;
+import com.google.common.collect.ImmutableList;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.PrimitiveIterator;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * An ordered set of FizzBuzz rules compiled for classifying ranges of
+ * values. Rules are held in order of precedence and a value is classified
+ * as the index of the first matching rule, or the rule count when no rule
+ * matches and the value is output as a number.
+ */
+final class RuleSet {
+
+    private final List<Rule> rules;
+    private final String[] results;
+    private final int[] resultLengths;
+    private final RuleTable ruleTable;
+    private final RangeCounter rangeCounter;
+
+    /**
+     * Compiles the rules into a rule set.
+     * @param rules The rules in order of precedence.
+     */
+    RuleSet(List<Rule> rules) {
+        this.rules = ImmutableList.copyOf(rules);
+        Rule[] ordered = rules.toArray(new Rule[0]);
+        this.results = new String[ordered.length];
+        this.resultLengths = new int[ordered.length];
+        for (int i = 0; i < ordered.length; i++) {
+            results[i] = ordered[i].result();
+            resultLengths[i] = results[i].getBytes(UTF_8).length;
+        }
+        this.ruleTable = RuleTable.compile(ordered);
+        this.rangeCounter = RangeCounter.of(ordered);
+    }
+
+    /**
+     * The rules in order of precedence.
+     * @return the rules
+     */
+    List<Rule> rules() {
+        return rules;
+    }
+
+    /**
+     * The result text of each rule in order of precedence.
+     * @return the rule results
+     */
+    String[] results() {
+        return results;
+    }
+
+    /**
+     * The cycle table the rules are compiled into.
+     * @return the rule table
+     */
+    RuleTable ruleTable() {
+        return ruleTable;
+    }
+
+    /**
+     * Classifies a single value.
+     * @param value The value to classify.
+     * @return the winning rule index, or the rule count for numbers
+     */
+    int ruleIndex(long value) {
+        return ruleTable.ruleIndex(value, ruleTable.residueOf(value));
+    }
+
+    /**
+     * The token that a single value is rendered as.
+     * @param value The value to render.
+     * @return the rule result or the value as a number
+     */
+    String token(long value) {
+        int index = ruleIndex(value);
+        return (index == results.length) ? String.valueOf(value) : results[index];
+    }
+
+    /**
+     * The number of UTF-8 bytes in a token.
+     * @param index The winning rule index, or the rule count for numbers.
+     * @param value The value.
+     * @return the token length in bytes
+     */
+    int tokenLength(int index, long value) {
+        return (index == results.length) ? TokenEncoder.digitCount(value) : resultLengths[index];
+    }
+
+    /**
+     * A spliterator classifying each value in the range lazily.
+     * @param from The start value of the range.
+     * @param to The end value of the range.
+     * @return a spliterator of rule indices
+     */
+    TokenSpliterator spliterator(long from, long to) {
+        return new TokenSpliterator(ruleTable, results, from, to);
+    }
+
+    /**
+     * The values in the range whose winning rule is a target, found
+     * lazily by stepping between candidate values.
+     * @param from The start value of the range.
+     * @param to The end value of the range.
+     * @param targets Whether each rule index, or the rule count for numbers, is a target.
+     * @return an iterator over the matching values
+     */
+    PrimitiveIterator.OfLong valuesWonBy(long from, long to, boolean[] targets) {
+        return new MatchIterator(ruleTable, rules, targets, from, to);
+    }
+
+    /**
+     * The index of a rule in order of precedence.
+     * @param rule The rule.
+     * @return the rule index, or -1 if the rule is not in the set
+     */
+    int indexOf(Rule rule) {
+        return rules.indexOf(rule);
+    }
+
+    /**
+     * Creates empty statistics for these rules.
+     * @return new statistics
+     */
+    Statistics newStatistics() {
+        return new Statistics(rules);
+    }
+
+    /**
+     * Classifies each value in the range in ascending order, passing the
+     * token for each value to the sink and counting it in the statistics.
+     * The range is walked with a {@link DecimalOdometer} when the rules
+     * can be classified from its digit counts.
+     * @param from The start value of the range.
+     * @param to The end value of the range.
+     * @param sink The sink for tokens.
+     * @param statistics The statistics to count tokens in.
+     * @throws IOException if the sink cannot be written to.
+     */
+    void render(long from, long to, TokenSink sink, Statistics statistics) throws IOException {
+        int cycle = ruleTable.cycle();
+        int residue = ruleTable.residueOf(from);
+        if (ruleTable.classifiesDigits()) {
+            DecimalOdometer odometer = new DecimalOdometer(from);
+            for (long value = from; ; value++) {
+                int index = ruleTable.ruleIndex(odometer, residue);
+                if (++residue == cycle) residue = 0;
+                statistics.increment(index);
+                sink.token(index, value, odometer);
+                if (value == to) break;
+                odometer.increment();
+            }
+            return;
+        }
+        for (long value = from; ; value++) {
+            int index = ruleTable.ruleIndex(value, residue);
+            if (++residue == cycle) residue = 0;
+            statistics.increment(index);
+            sink.token(index, value);
+            if (value == to) break;
+        }
+    }
+
+    /**
+     * Counts how often each rule wins over the range, in closed form
+     * when the rules allow it and otherwise by classifying each value.
+     * @param from The start value of the range.
+     * @param to The end value of the range.
+     * @param statistics The statistics to count in.
+     */
+    void count(long from, long to, Statistics statistics) {
+        if (rangeCounter != null) {
+            statistics.add(rangeCounter.count(from, to));
+            return;
+        }
+        int cycle = ruleTable.cycle();
+        int residue = ruleTable.residueOf(from);
+        for (long value = from; ; value++) {
+            statistics.increment(ruleTable.ruleIndex(value, residue));
+            if (++residue == cycle) residue = 0;
+            if (value == to) break;
+        }
+    }
+
+    /**
+     * Calculates the exact number of UTF-8 bytes produced by rendering
+     * the range, without rendering it. The range is split into bands of
+     * numbers with the same digit count and the tokens in each band are
+     * counted, in closed form when the rules allow it.
+     * @param from The start value of the range.
+     * @param to The end value of the range.
+     * @param statistics The statistics to count tokens in.
+     * @return the rendered length in bytes
+     */
+    long length(long from, long to, Statistics statistics) {
+        long length = to - from;
+        long bandFrom = from;
+        while (true) {
+            int digits = TokenEncoder.digitCount(bandFrom);
+            long bandTo = Math.min(to, largestWithDigits(digits));
+            Statistics band = newStatistics();
+            count(bandFrom, bandTo, band);
+            for (int i = 0; i < results.length; i++) {
+                length = Math.addExact(length, Math.multiplyExact(band.count(i), resultLengths[i]));
+            }
+            length = Math.addExact(length, Math.multiplyExact(band.count(results.length), digits));
+            statistics.add(band);
+            if (bandTo == to) return length;
+            bandFrom = bandTo + 1;
+        }
+    }
+
+    private static long largestWithDigits(int digits) {
+        long largest = 9;
+        for (int i = 1; i < digits && largest < Long.MAX_VALUE / 10; i++) {
+            largest = largest * 10 + 9;
+        }
+        return (digits >= 19) ? Long.MAX_VALUE : largest;
+    }
+
+    /**
+     * Whether statistics for these rules are counted in closed form
+     * rather than by classifying each value.
+     * @return true if statistics are calculated in closed form
+     */
+    boolean countsInClosedForm() {
+        return rangeCounter != null;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof RuleSet)) return false;
+        return rules.equals(((RuleSet) obj).rules);
+    }
+
+    @Override
+    public int hashCode() {
+        return rules.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return rules.toString();
+    }
+}
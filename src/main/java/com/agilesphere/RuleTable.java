@@ -0,0 +1,174 @@
+package com.agilesphere;
+
+import com.agilesphere.rules.ContainsDigitRule;
+import com.agilesphere.rules.LongRule;
+import com.agilesphere.rules.PeriodicRule;
+import com.agilesphere.rules.Rule;
+import com.google.common.math.LongMath;
+import com.agilesphere.utils.DecimalOdometer;
+import com.google.common.primitives.Ints;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.agilesphere.rules.Rules.asLongRule;
+
+/**
+ * A rule set compiled into a cycle table. The winning periodic rule for
+ * each residue of the value modulo the least common multiple of the rule
+ * periods is computed once, so classifying a value is a table lookup by
+ * residue. Rules that are not periodic, or whose period would make the
+ * table too large, are evaluated for each value by a compiled
+ * {@link RuleEvaluator} but only when they take precedence over the
+ * periodic rule the table selected. When every
+ * evaluated rule is a base 10 digit rule, values can instead be classified
+ * from the digit counts of a {@link DecimalOdometer}.
+ */
+final class RuleTable {
+
+    static final int MAX_CYCLE = 1 << 12;
+
+    private final int numberIndex;
+    private final int cycle;
+    private final int[] winners;
+    private final boolean[] tabled;
+    private final int[] evaluatedIndices;
+    private final RuleEvaluator evaluator;
+    private final int[] evaluatedDigits;
+
+    private RuleTable(Rule[] rules, int cycle, boolean[] tabled) {
+        this.numberIndex = rules.length;
+        this.cycle = cycle;
+        this.winners = new int[cycle];
+        this.tabled = tabled;
+        for (int residue = 0; residue < cycle; residue++) {
+            winners[residue] = winner(rules, tabled, residue == 0 ? cycle : residue);
+        }
+        List<Integer> evaluated = new ArrayList<>();
+        for (int i = 0; i < rules.length; i++) {
+            if (!tabled[i]) evaluated.add(i);
+        }
+        this.evaluatedIndices = Ints.toArray(evaluated);
+        LongRule[] evaluatedRules = new LongRule[evaluatedIndices.length];
+        for (int i = 0; i < evaluatedIndices.length; i++) {
+            evaluatedRules[i] = asLongRule(rules[evaluatedIndices[i]]);
+        }
+        this.evaluator = RuleEvaluator.compile(evaluatedRules, evaluatedIndices);
+        this.evaluatedDigits = digitsOf(evaluatedRules);
+    }
+
+    /**
+     * Compiles the rules into a cycle table.
+     * @param rules The rules in order of precedence.
+     * @return The compiled rule table.
+     */
+    static RuleTable compile(Rule[] rules) {
+        int cycle = 1;
+        boolean[] tabled = new boolean[rules.length];
+        for (int i = 0; i < rules.length; i++) {
+            if (rules[i] instanceof PeriodicRule) {
+                long lcm = lcm(cycle, ((PeriodicRule) rules[i]).period());
+                if (lcm <= MAX_CYCLE) {
+                    cycle = (int) lcm;
+                    tabled[i] = true;
+                }
+            }
+        }
+        return new RuleTable(rules, cycle, tabled);
+    }
+
+    /**
+     * The length of the cycle that the table is indexed by.
+     * @return the cycle length
+     */
+    int cycle() {
+        return cycle;
+    }
+
+    /**
+     * The winning tabled rule for a residue, which evaluated rules of
+     * higher precedence may still override.
+     * @param residue The residue modulo the cycle length.
+     * @return the table winner index
+     */
+    int winner(int residue) {
+        return winners[residue];
+    }
+
+    /**
+     * Whether a rule is selected by the table rather than evaluated.
+     * @param index The rule index.
+     * @return true if the rule is tabled
+     */
+    boolean isTabled(int index) {
+        return tabled[index];
+    }
+
+    /**
+     * The residue of the value modulo the cycle length.
+     * @param value The value.
+     * @return the table residue
+     */
+    int residueOf(long value) {
+        return (int) (value % cycle);
+    }
+
+    /**
+     * Classifies the value as the index of the winning rule in order of
+     * precedence, or the number of rules if no rule matches the value.
+     * @param value The value to classify.
+     * @param residue The residue of the value modulo the cycle length.
+     * @return the winning rule index
+     */
+    int ruleIndex(long value, int residue) {
+        int winner = winners[residue];
+        if (evaluatedIndices.length == 0 || evaluatedIndices[0] >= winner) return winner;
+        return evaluator.ruleIndex(value, winner);
+    }
+
+    /**
+     * Whether values can be classified from decimal digit counts,
+     * because every rule the table does not select is a base 10 digit
+     * rule.
+     * @return true if {@link #ruleIndex(DecimalOdometer, int)} is supported
+     */
+    boolean classifiesDigits() {
+        return evaluatedDigits != null;
+    }
+
+    /**
+     * Classifies the value shown by the odometer as the index of the
+     * winning rule in order of precedence, or the number of rules if no
+     * rule matches the value.
+     * @param odometer The odometer showing the value to classify.
+     * @param residue The residue of the value modulo the cycle length.
+     * @return the winning rule index
+     */
+    int ruleIndex(DecimalOdometer odometer, int residue) {
+        int winner = winners[residue];
+        for (int i = 0; i < evaluatedDigits.length && evaluatedIndices[i] < winner; i++) {
+            if (odometer.contains(evaluatedDigits[i])) return evaluatedIndices[i];
+        }
+        return winner;
+    }
+
+    private static int[] digitsOf(LongRule[] rules) {
+        int[] digits = new int[rules.length];
+        for (int i = 0; i < rules.length; i++) {
+            if (!(rules[i] instanceof ContainsDigitRule) || ((ContainsDigitRule) rules[i]).base() != 10) return null;
+            digits[i] = ((ContainsDigitRule) rules[i]).digit();
+        }
+        return digits;
+    }
+
+    private int winner(Rule[] rules, boolean[] tabled, int representative) {
+        for (int i = 0; i < rules.length; i++) {
+            if (tabled[i] && rules[i].matches(representative)) return i;
+        }
+        return numberIndex;
+    }
+
+    static long lcm(long a, long b) {
+        return a / LongMath.gcd(a, b) * b;
+    }
+}
@@ -0,0 +1,148 @@
+package com.agilesphere;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * A size bounded cache of rendered output shared across FizzBuzz
+ * instances. Output is cached as segments of a fixed number of values
+ * aligned to multiples of the segment size, keyed by the rule set and
+ * segment index, so identical and overlapping ranges with the same rules
+ * reuse the segments they have in common. Segments are evicted by the
+ * number of UTF-8 bytes they hold. Only segments that a range covers
+ * completely are cached, the partial segments at either end of a range
+ * are rendered directly.
+ */
+final class SegmentCache {
+
+    static final int SEGMENT_SIZE = 1 << 16;
+    static final long MAX_BYTES = 1L << 26;
+
+    private static final SegmentCache SHARED = new SegmentCache(MAX_BYTES);
+
+    private final LoadingCache<Key, Segment> segments;
+
+    /**
+     * Creates a cache holding at most the given number of bytes.
+     * @param maxBytes The maximum total size of cached segments.
+     */
+    SegmentCache(long maxBytes) {
+        this.segments = CacheBuilder.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Key key, Segment segment) -> segment.bytes.length)
+                .recordStats()
+                .build(CacheLoader.from(SegmentCache::render));
+    }
+
+    /**
+     * The cache shared by all FizzBuzz instances in the process.
+     * @return the shared cache
+     */
+    static SegmentCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Renders the range to the sink, taking segments that the range
+     * covers completely from the cache.
+     * @param ruleSet The rules to classify values with.
+     * @param from The start value of the range.
+     * @param to The end value of the range.
+     * @param sink The sink for tokens.
+     * @param statistics The statistics to count tokens in.
+     * @throws IOException if the sink cannot be written to.
+     */
+    void render(RuleSet ruleSet, long from, long to, TokenSink sink, Statistics statistics) throws IOException {
+        for (long index = from / SEGMENT_SIZE; index <= to / SEGMENT_SIZE; index++) {
+            long segmentFrom = segmentFrom(index);
+            long segmentTo = segmentTo(index);
+            if (segmentFrom >= from && segmentTo <= to) {
+                Segment segment = segments.getUnchecked(new Key(ruleSet, index));
+                sink.tokens(segment.bytes);
+                statistics.add(segment.statistics);
+            } else {
+                ruleSet.render(Math.max(from, segmentFrom), Math.min(to, segmentTo), sink, statistics);
+            }
+        }
+    }
+
+    /**
+     * The hit, miss and eviction counts of the cache.
+     * @return the cache statistics
+     */
+    CacheStats stats() {
+        return segments.stats();
+    }
+
+    /**
+     * The total number of bytes held by cached segments.
+     * @return the cached size in bytes
+     */
+    long bytes() {
+        return segments.asMap().values().stream().mapToLong(segment -> segment.bytes.length).sum();
+    }
+
+    private static long segmentFrom(long index) {
+        return Math.max(1, index * SEGMENT_SIZE);
+    }
+
+    private static long segmentTo(long index) {
+        return index * SEGMENT_SIZE + SEGMENT_SIZE - 1;
+    }
+
+    private static Segment render(Key key) {
+        Statistics statistics = key.ruleSet.newStatistics();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(SEGMENT_SIZE * 8);
+        TokenEncoder encoder = new TokenEncoder(key.ruleSet.results(),
+                buffer -> bytes.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining()));
+        try {
+            key.ruleSet.render(segmentFrom(key.index), segmentTo(key.index), encoder, statistics);
+            encoder.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new Segment(bytes.toByteArray(), statistics);
+    }
+
+    private static final class Key {
+
+        private final RuleSet ruleSet;
+        private final long index;
+
+        private Key(RuleSet ruleSet, long index) {
+            this.ruleSet = ruleSet;
+            this.index = index;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Key)) return false;
+            Key that = (Key) obj;
+            return (this.index == that.index) && this.ruleSet.equals(that.ruleSet);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(ruleSet, index);
+        }
+    }
+
+    private static final class Segment {
+
+        private final byte[] bytes;
+        private final Statistics statistics;
+
+        private Segment(byte[] bytes, Statistics statistics) {
+            this.bytes = bytes;
+            this.statistics = statistics;
+        }
+    }
+}
@@ -0,0 +1,559 @@
+package com.agilesphere;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.CacheStats;
+import com.google.common.hash.Hashing;
+import com.google.common.primitives.Longs;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.*;
+
+/**
+ * A size bounded store of rendered output in a directory, kept across
+ * restarts. Output is stored as one file per segment of a fixed number
+ * of values aligned to multiples of the segment size, keyed by a
+ * fingerprint of the rules in order of precedence: their kinds,
+ * parameters and results. Each file starts with the byte offset and rule
+ * counters of every block of values in the segment, so a range that
+ * covers only part of a stored segment is served the blocks it covers
+ * from the file, memory mapped, and only the values outside stored
+ * blocks are rendered. Segments that a range covers completely are
+ * rendered and stored when missing, once however many ranges need them
+ * at the same time.
+ *
+ * The stored segments and their order of use are recorded in an append
+ * only journal, so opening a store reads one small file rather than
+ * every segment file. The journal is compacted whenever it holds many
+ * more records than segments, so it stays in proportion to the stored
+ * segments rather than to the number of reads, and segment files that
+ * it does not record are deleted when a store opens with a journal to
+ * compact. Segment files are evicted least recently used first once
+ * their total size exceeds the bound. A store directory is locked by
+ * the process that opens it.
+ */
+final class SegmentStore implements AutoCloseable {
+
+    static final int SEGMENT_SIZE = 1 << 20;
+    static final int BLOCK_SIZE = 1 << 12;
+    static final long DEFAULT_MAX_BYTES = 1L << 30;
+
+    private static final int MAGIC = 0x465A5353;
+    private static final int VERSION = 1;
+    private static final String JOURNAL = "segments.journal";
+    private static final String LOCK = "segments.lock";
+    private static final String SEGMENT = ".segment";
+    private static final byte ADD = 'A';
+    private static final byte TOUCH = 'T';
+    private static final byte REMOVE = 'R';
+    private static final int RECORD_BYTES = 1 + 4 * Long.BYTES;
+    private static final int COMPACT_SLACK = 1024;
+    private static final int BLOCKS_PER_CHUNK = 32;
+
+    private static final Map<Path, SegmentStore> OPEN = new HashMap<>();
+
+    private final Path directory;
+    private final long maxBytes;
+    private final int segmentSize;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    private final Map<Key, Long> sizes = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Key, CompletableFuture<Void>> storing = new HashMap<>();
+    private FileChannel journal;
+    private long records;
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Opens a store in the directory, creating it if necessary.
+     * @param directory The directory holding the store.
+     * @param maxBytes The maximum total size of stored segment files.
+     * @param segmentSize The number of values per segment, a multiple of the block size.
+     * @throws IOException if the store cannot be opened or is locked by another process.
+     */
+    SegmentStore(Path directory, long maxBytes, int segmentSize) throws IOException {
+        checkArgument(maxBytes > 0, "Max bytes must be positive - maxBytes(%s)", maxBytes);
+        checkArgument(segmentSize > 0 && segmentSize % BLOCK_SIZE == 0,
+                "Segment size must be a positive multiple of %s - segmentSize(%s)", BLOCK_SIZE, segmentSize);
+        this.directory = Files.createDirectories(directory);
+        this.maxBytes = maxBytes;
+        this.segmentSize = segmentSize;
+        this.lockChannel = FileChannel.open(directory.resolve(LOCK), CREATE, WRITE);
+        this.lock = lockChannel.tryLock();
+        if (lock == null) {
+            lockChannel.close();
+            throw new IOException("Segment store is in use by another process - " + directory);
+        }
+        replay();
+        this.journal = FileChannel.open(directory.resolve(JOURNAL), CREATE, WRITE, APPEND);
+        if (isOversized()) {
+            compact();
+            deleteUnrecorded();
+        }
+        evict();
+    }
+
+    /**
+     * The store in the directory shared by all FizzBuzz instances in the
+     * process, opened on first use with the size bound given then.
+     * @param directory The directory holding the store.
+     * @param maxBytes The maximum total size of stored segment files.
+     * @return the shared store
+     * @throws IOException if the store cannot be opened.
+     */
+    static SegmentStore shared(Path directory, long maxBytes) throws IOException {
+        Path normalized = directory.toAbsolutePath().normalize();
+        synchronized (OPEN) {
+            SegmentStore store = OPEN.get(normalized);
+            if (store == null) {
+                store = new SegmentStore(normalized, maxBytes, SEGMENT_SIZE);
+                OPEN.put(normalized, store);
+            }
+            return store;
+        }
+    }
+
+    /**
+     * Renders the range to the sink, taking the blocks of stored
+     * segments that the range covers from the store and storing the
+     * missing segments that the range covers completely.
+     * @param ruleSet The rules to classify values with, all divisibility or digit rules.
+     * @param from The start value of the range.
+     * @param to The end value of the range.
+     * @param sink The sink for tokens.
+     * @param statistics The statistics to count tokens in.
+     * @throws IOException if a segment cannot be read or stored, or the sink cannot be written to.
+     */
+    void render(RuleSet ruleSet, long from, long to, TokenSink sink, Statistics statistics) throws IOException {
+        byte[] fingerprint = fingerprint(ruleSet);
+        for (long index = from / segmentSize; index <= to / segmentSize; index++) {
+            long first = Math.max(from, segmentFrom(index));
+            long last = Math.min(to, segmentTo(index));
+            Key key = new Key(fingerprint, index);
+            Segment segment = read(key, first == segmentFrom(index) && last == segmentTo(index) ? ruleSet : null);
+            if (segment == null) {
+                ruleSet.render(first, last, sink, statistics);
+            } else {
+                segment.render(ruleSet, first, last, sink, statistics);
+            }
+        }
+    }
+
+    /**
+     * The hit, miss and eviction counts of the store. A hit is a segment
+     * read from the store and a miss a segment not stored when a range
+     * needed it, whether or not the range then stored it.
+     * @return the store statistics
+     */
+    synchronized CacheStats stats() {
+        return new CacheStats(hits, misses, 0, 0, 0, evictions);
+    }
+
+    /**
+     * The total size of stored segment files.
+     * @return the stored size in bytes
+     */
+    synchronized long bytes() {
+        return bytes;
+    }
+
+    /**
+     * The number of stored segments.
+     * @return the segment count
+     */
+    synchronized int size() {
+        return sizes.size();
+    }
+
+    /**
+     * Closes the journal and releases the directory lock.
+     * @throws IOException if the journal cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (OPEN) {
+            OPEN.remove(directory, this);
+        }
+        synchronized (this) {
+            journal.close();
+            lock.release();
+            lockChannel.close();
+        }
+    }
+
+    private Segment read(Key key, RuleSet renderMissing) throws IOException {
+        boolean stored;
+        synchronized (this) {
+            stored = sizes.get(key) != null;
+            if (stored) {
+                hits++;
+                append(TOUCH, key, 0);
+            } else {
+                misses++;
+            }
+        }
+        if (stored) {
+            try {
+                return map(key);
+            } catch (NoSuchFileException e) {
+                remove(key);
+            }
+        }
+        if (renderMissing == null) return null;
+        CompletableFuture<Void> claimed = new CompletableFuture<>();
+        CompletableFuture<Void> storing = claim(key, claimed);
+        if (storing != null) {
+            try {
+                storing.join();
+            } catch (CompletionException e) {
+                return null;
+            }
+        } else {
+            try {
+                store(key, renderMissing);
+                claimed.complete(null);
+            } catch (IOException | RuntimeException e) {
+                claimed.completeExceptionally(e);
+                throw e;
+            } finally {
+                synchronized (this) {
+                    this.storing.remove(key);
+                }
+            }
+        }
+        try {
+            return map(key);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Claims storing a missing segment, returning null if the caller is
+     * to store it, or otherwise the future of the caller already storing
+     * it, completed if it has since been stored.
+     */
+    private synchronized CompletableFuture<Void> claim(Key key, CompletableFuture<Void> claimed) {
+        if (sizes.containsKey(key)) return CompletableFuture.completedFuture(null);
+        return storing.putIfAbsent(key, claimed);
+    }
+
+    private void store(Key key, RuleSet ruleSet) throws IOException {
+        long size = write(key, ruleSet);
+        synchronized (this) {
+            if (!sizes.containsKey(key)) {
+                sizes.put(key, size);
+                bytes += size;
+                append(ADD, key, size);
+                evict(key);
+            }
+        }
+    }
+
+    private Segment map(Key key) throws IOException {
+        try (FileChannel channel = FileChannel.open(file(key), READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.getInt() != MAGIC || mapped.get() != VERSION || mapped.getLong() != key.index) {
+                throw new IOException("Not a stored segment - " + file(key));
+            }
+            int codes = mapped.getInt();
+            int blocks = mapped.getInt();
+            int[] offsets = new int[blocks + 1];
+            mapped.asIntBuffer().get(offsets);
+            mapped.position(mapped.position() + offsets.length * Integer.BYTES);
+            int[] counts = new int[blocks * codes];
+            mapped.asIntBuffer().get(counts);
+            mapped.position(mapped.position() + counts.length * Integer.BYTES);
+            return new Segment(key.index, codes, offsets, counts, mapped.slice());
+        }
+    }
+
+    private long write(Key key, RuleSet ruleSet) throws IOException {
+        int codes = ruleSet.results().length + 1;
+        long segmentFrom = segmentFrom(key.index);
+        long segmentTo = segmentTo(key.index);
+        int blocks = (int) ((segmentTo - segmentFrom) / BLOCK_SIZE + 1);
+        int[] offsets = new int[blocks + 1];
+        int[] counts = new int[blocks * codes];
+        ByteArrayOutputStream text = new ByteArrayOutputStream(segmentSize * 8);
+        TokenEncoder encoder = new TokenEncoder(ruleSet.results(),
+                buffer -> text.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining()));
+        for (int block = 0; block < blocks; block++) {
+            Statistics statistics = ruleSet.newStatistics();
+            ruleSet.render(blockFrom(key.index, block), Math.min(segmentTo, blockFrom(key.index, block + 1) - 1),
+                    encoder, statistics);
+            encoder.flush();
+            offsets[block + 1] = text.size() + 1;
+            for (int code = 0; code < codes; code++) {
+                counts[block * codes + code] = (int) statistics.count(code);
+            }
+        }
+        ByteArrayOutputStream file = new ByteArrayOutputStream(text.size() + (offsets.length + counts.length + 8) * 4);
+        DataOutputStream out = new DataOutputStream(file);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        out.writeLong(key.index);
+        out.writeInt(codes);
+        out.writeInt(blocks);
+        for (int offset : offsets) out.writeInt(offset);
+        for (int count : counts) out.writeInt(count);
+        text.writeTo(out);
+        out.flush();
+        Path temporary = Files.createTempFile(directory, key.name(), ".tmp");
+        try {
+            Files.write(temporary, file.toByteArray());
+            Files.move(temporary, file(key), ATOMIC_MOVE, REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        return file.size();
+    }
+
+    private synchronized void remove(Key key) throws IOException {
+        Long size = sizes.remove(key);
+        if (size == null) return;
+        bytes -= size;
+        append(REMOVE, key, 0);
+    }
+
+    private void evict() throws IOException {
+        evict(null);
+    }
+
+    /**
+     * Deletes the least recently used segment files, other than the one
+     * just stored, until the total size is within the bound.
+     */
+    private void evict(Key keep) throws IOException {
+        Iterator<Map.Entry<Key, Long>> eldest = sizes.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<Key, Long> entry = eldest.next();
+            if (entry.getKey().equals(keep)) continue;
+            eldest.remove();
+            bytes -= entry.getValue();
+            evictions++;
+            append(REMOVE, entry.getKey(), 0);
+            try {
+                Files.deleteIfExists(file(entry.getKey()));
+            } catch (IOException e) {
+                // mapped elsewhere, removed from the journal and deleted on compaction
+            }
+        }
+    }
+
+    private void append(byte type, Key key, long size) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_BYTES);
+        record.put(type).putLong(key.high).putLong(key.low).putLong(key.index).putLong(size).flip();
+        while (record.hasRemaining()) journal.write(record);
+        records++;
+        if (isOversized()) compact();
+    }
+
+    private boolean isOversized() {
+        return records > 2L * sizes.size() + COMPACT_SLACK;
+    }
+
+    private void replay() throws IOException {
+        Path path = directory.resolve(JOURNAL);
+        if (!Files.exists(path)) return;
+        ByteBuffer journal = ByteBuffer.wrap(Files.readAllBytes(path));
+        while (journal.remaining() >= RECORD_BYTES) {
+            byte type = journal.get();
+            Key key = new Key(journal.getLong(), journal.getLong(), journal.getLong());
+            long size = journal.getLong();
+            records++;
+            if (type == ADD) {
+                Long previous = sizes.put(key, size);
+                bytes += size - ((previous != null) ? previous : 0);
+            } else if (type == TOUCH) {
+                sizes.get(key);
+            } else if (type == REMOVE) {
+                Long removed = sizes.remove(key);
+                if (removed != null) bytes -= removed;
+            } else {
+                throw new IOException("Unknown journal record " + type + " - " + path);
+            }
+        }
+    }
+
+    /**
+     * Rewrites the journal as one record per stored segment in order of
+     * use, so the journal stays in proportion to the stored segments
+     * however many times they are read.
+     */
+    private void compact() throws IOException {
+        Path temporary = directory.resolve(JOURNAL + ".tmp");
+        journal.close();
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, CREATE, TRUNCATE_EXISTING, WRITE)) {
+                journal = channel;
+                records = 0;
+                for (Map.Entry<Key, Long> entry : sizes.entrySet()) {
+                    append(ADD, entry.getKey(), entry.getValue());
+                }
+            }
+            Files.move(temporary, directory.resolve(JOURNAL), ATOMIC_MOVE, REPLACE_EXISTING);
+        } finally {
+            journal = FileChannel.open(directory.resolve(JOURNAL), CREATE, WRITE, APPEND);
+        }
+    }
+
+    /**
+     * Deletes segment files that the journal does not record, left by a
+     * process that stopped between storing a file and recording it.
+     */
+    private void deleteUnrecorded() throws IOException {
+        Map<String, Key> names = new HashMap<>();
+        sizes.keySet().forEach(key -> names.put(key.name() + SEGMENT, key));
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*{" + SEGMENT + ",.tmp}")) {
+            for (Path file : files) {
+                if (!names.containsKey(file.getFileName().toString())) Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private Path file(Key key) {
+        return directory.resolve(key.name() + SEGMENT);
+    }
+
+    private long segmentFrom(long index) {
+        return Math.max(1, index * segmentSize);
+    }
+
+    private long segmentTo(long index) {
+        return index * segmentSize + segmentSize - 1;
+    }
+
+    private long blockFrom(long index, int block) {
+        return Math.max(1, index * segmentSize + (long) block * BLOCK_SIZE);
+    }
+
+    private byte[] fingerprint(RuleSet ruleSet) {
+        ByteArrayOutputStream description = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(description)) {
+            out.writeInt(segmentSize);
+            ShardWorker.writeRules(ruleSet.rules(), out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return Hashing.sha256().hashBytes(description.toByteArray()).asBytes();
+    }
+
+    /**
+     * A stored segment, memory mapped.
+     */
+    private final class Segment {
+
+        private final long index;
+        private final int codes;
+        private final int[] offsets;
+        private final int[] counts;
+        private final ByteBuffer text;
+
+        private Segment(long index, int codes, int[] offsets, int[] counts, ByteBuffer text) {
+            this.index = index;
+            this.codes = codes;
+            this.offsets = offsets;
+            this.counts = counts;
+            this.text = text;
+        }
+
+        /**
+         * Renders the values of the segment in the range, taking whole
+         * blocks from the stored text and rendering the values at either
+         * end that do not fill a block.
+         */
+        private void render(RuleSet ruleSet, long from, long to, TokenSink sink, Statistics statistics)
+                throws IOException {
+            int blocks = offsets.length - 1;
+            int block = 0;
+            while (block < blocks && blockFrom(index, block) < from) block++;
+            int end = block;
+            while (end < blocks && blockTo(end) <= to) end++;
+            if (block == end) {
+                ruleSet.render(from, to, sink, statistics);
+                return;
+            }
+            if (from < blockFrom(index, block)) ruleSet.render(from, blockFrom(index, block) - 1, sink, statistics);
+            long[] blockCounts = new long[codes];
+            for (int chunk = block; chunk < end; chunk += BLOCKS_PER_CHUNK) {
+                int chunkEnd = Math.min(end, chunk + BLOCKS_PER_CHUNK);
+                byte[] tokens = new byte[offsets[chunkEnd] - 1 - offsets[chunk]];
+                ByteBuffer bytes = text.duplicate();
+                bytes.position(offsets[chunk]);
+                bytes.get(tokens);
+                sink.tokens(tokens);
+                for (int b = chunk; b < chunkEnd; b++) {
+                    for (int code = 0; code < codes; code++) {
+                        blockCounts[code] += counts[b * codes + code];
+                    }
+                }
+            }
+            statistics.add(blockCounts);
+            if (blockTo(end - 1) < to) ruleSet.render(blockTo(end - 1) + 1, to, sink, statistics);
+        }
+
+        private long blockTo(int block) {
+            return Math.min(segmentTo(index), blockFrom(index, block + 1) - 1);
+        }
+    }
+
+    private static final class Key {
+
+        private final long high;
+        private final long low;
+        private final long index;
+
+        private Key(byte[] fingerprint, long index) {
+            this(Longs.fromBytes(fingerprint[0], fingerprint[1], fingerprint[2], fingerprint[3],
+                            fingerprint[4], fingerprint[5], fingerprint[6], fingerprint[7]),
+                    Longs.fromBytes(fingerprint[8], fingerprint[9], fingerprint[10], fingerprint[11],
+                            fingerprint[12], fingerprint[13], fingerprint[14], fingerprint[15]),
+                    index);
+        }
+
+        private Key(long high, long low, long index) {
+            this.high = high;
+            this.low = low;
+            this.index = index;
+        }
+
+        private String name() {
+            return String.format("%016x%016x-%x", high, low, index);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Key)) return false;
+            Key that = (Key) obj;
+            return (this.high == that.high) && (this.low == that.low) && (this.index == that.index);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(high, low, index);
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.agilesphere;
+
+import com.agilesphere.TokenEncoder.ByteSink;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders a range across several worker processes on the same machine.
+ * The coordinator starts each worker as a child JVM running the FizzBuzz
+ * main class in worker mode, which connects back over a loopback socket
+ * and is sent the rules. The range is split into shards that workers
+ * take from a shared queue, and shard outputs are written to the
+ * destination in range order with a bounded window of shards in flight,
+ * so the output is identical to rendering the range sequentially.
+ * Shards are only created as the window advances and are dropped once
+ * written, so the coordinator holds at most a window of shard outputs.
+ * Statistics counters are returned with each shard and merged. When a
+ * worker fails or its connection breaks its shard is put back at the
+ * head of the queue for another worker, and rendering fails only once
+ * every worker has failed. Workers that exit before connecting count as
+ * failed, and rendering continues with the workers that connected.
+ * Workers and the threads serving them are stopped when rendering ends,
+ * whether or not it succeeded.
+ */
+final class ShardCoordinator {
+
+    static final int SHARD_SIZE = 1 << 20;
+    static final int CONNECT_TIMEOUT_MILLIS = 30_000;
+    static final int READ_TIMEOUT_MILLIS = 60_000;
+    static final int ACCEPT_POLL_MILLIS = 100;
+
+    private static final byte[] SEPARATOR = {' '};
+
+    private final RuleSet ruleSet;
+    private final int workers;
+    private final int shardSize;
+    private final int exitAfter;
+
+    /**
+     * Creates a coordinator for the rule set.
+     * @param ruleSet The rules to classify values with.
+     * @param workers The number of worker processes.
+     */
+    ShardCoordinator(RuleSet ruleSet, int workers) {
+        this(ruleSet, workers, SHARD_SIZE, 0);
+    }
+
+    /**
+     * Creates a coordinator with a shard size, whose first worker halts
+     * after rendering the given number of shards unless it is 0, or
+     * before connecting if it is negative.
+     * @param ruleSet The rules to classify values with.
+     * @param workers The number of worker processes.
+     * @param shardSize The number of values in each shard.
+     * @param exitAfter The number of shards after which the first worker halts.
+     */
+    ShardCoordinator(RuleSet ruleSet, int workers, int shardSize, int exitAfter) {
+        this.ruleSet = ruleSet;
+        this.workers = workers;
+        this.shardSize = shardSize;
+        this.exitAfter = exitAfter;
+    }
+
+    /**
+     * Renders the range to the sink in order.
+     * @param from The start value of the range.
+     * @param to The end value of the range.
+     * @param sink The sink for encoded shards.
+     * @return The statistics for the range.
+     * @throws IOException if workers cannot be started, every worker
+     *         fails or the sink cannot be written to.
+     */
+    Statistics render(long from, long to, ByteSink sink) throws IOException {
+        BlockingDeque<Shard> pending = new LinkedBlockingDeque<>();
+        Deque<Shard> inFlight = new ArrayDeque<>();
+        CompletableFuture<Void> failed = new CompletableFuture<>();
+        int window = 2 * workers;
+        long next = from;
+        while (next != 0 && inFlight.size() < window) {
+            next = submit(next, to, pending, inFlight);
+        }
+        List<Process> processes = new ArrayList<>();
+        List<Socket> sockets = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        try (ServerSocket server = new ServerSocket(0, workers, InetAddress.getLoopbackAddress())) {
+            for (int i = 0; i < workers; i++) {
+                processes.add(start(server.getLocalPort(), (i == 0) ? exitAfter : 0));
+            }
+            accept(server, processes, sockets);
+            if (sockets.isEmpty()) throw new IOException("No shard worker connected");
+            AtomicInteger live = new AtomicInteger(sockets.size());
+            for (int i = 0; i < sockets.size(); i++) {
+                Socket socket = sockets.get(i);
+                Thread thread = new Thread(() -> serve(socket, pending, live, failed), "fizzbuzz-shard-" + i);
+                thread.setDaemon(true);
+                thread.start();
+                threads.add(thread);
+            }
+            Statistics statistics = ruleSet.newStatistics();
+            for (boolean first = true; !inFlight.isEmpty(); first = false) {
+                ShardResult result = await(inFlight.removeFirst(), failed);
+                if (!first) sink.write(ByteBuffer.wrap(SEPARATOR));
+                sink.write(ByteBuffer.wrap(result.bytes));
+                statistics.add(result.counts);
+                if (next != 0) next = submit(next, to, pending, inFlight);
+            }
+            for (int i = 0; i < sockets.size(); i++) {
+                pending.add(Shard.END);
+            }
+            for (Thread thread : threads) {
+                thread.join(TimeUnit.SECONDS.toMillis(5));
+            }
+            return statistics;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while rendering shards", e);
+        } finally {
+            stop(threads, sockets, processes);
+        }
+    }
+
+    /**
+     * Stops the threads serving workers, which may be waiting for a
+     * shard or for a worker's reply when rendering fails, by interrupting
+     * them and closing their connections, and then stops the workers.
+     */
+    private static void stop(List<Thread> threads, List<Socket> sockets, List<Process> processes) {
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        for (Socket socket : sockets) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // the worker is destroyed below, which ends the connection anyway
+            }
+        }
+        for (Process process : processes) {
+            process.destroy();
+        }
+    }
+
+    /**
+     * Queues the shard starting at the value for workers and tracks it
+     * as in flight, returning the start of the next shard or 0 if the
+     * shard ends the range.
+     */
+    private long submit(long next, long to, BlockingDeque<Shard> pending, Deque<Shard> inFlight) {
+        long shardTo = (to - next < shardSize) ? to : next + shardSize - 1;
+        Shard shard = new Shard(next, shardTo);
+        inFlight.addLast(shard);
+        pending.add(shard);
+        return (shardTo == to) ? 0 : shardTo + 1;
+    }
+
+    /**
+     * Accepts connections from the worker processes into the sockets
+     * until every process has connected or exited, or the connect
+     * timeout has passed.
+     */
+    private void accept(ServerSocket server, List<Process> processes, List<Socket> sockets) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CONNECT_TIMEOUT_MILLIS);
+        server.setSoTimeout(ACCEPT_POLL_MILLIS);
+        while (sockets.size() < processes.size() && System.nanoTime() < deadline) {
+            try {
+                sockets.add(server.accept());
+            } catch (SocketTimeoutException e) {
+                long running = processes.stream().filter(Process::isAlive).count();
+                if (running <= sockets.size()) break;
+            }
+        }
+    }
+
+    private Process start(int port, int exitAfter) throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<String> command = new ArrayList<>();
+        command.add(java);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(FizzBuzz.class.getName());
+        command.add(ShardWorker.WORKER);
+        command.add("--port");
+        command.add(String.valueOf(port));
+        if (exitAfter != 0) {
+            command.add("--exit-after");
+            command.add(String.valueOf(exitAfter));
+        }
+        return new ProcessBuilder(command).inheritIO().start();
+    }
+
+    private void serve(Socket socket, BlockingDeque<Shard> pending, AtomicInteger live, CompletableFuture<Void> failed) {
+        try (Socket connection = socket) {
+            connection.setSoTimeout(READ_TIMEOUT_MILLIS);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+            ShardWorker.writeRules(ruleSet.rules(), out);
+            out.flush();
+            while (true) {
+                Shard shard = pending.take();
+                if (shard == Shard.END) {
+                    out.writeLong(0);
+                    out.flush();
+                    return;
+                }
+                try {
+                    shard.result.complete(renderShard(shard, in, out));
+                } catch (IOException | RuntimeException e) {
+                    pending.addFirst(shard);
+                    throw e;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            if (live.decrementAndGet() == 0) failed.completeExceptionally(new IOException("Every shard worker failed", e));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private ShardResult renderShard(Shard shard, DataInputStream in, DataOutputStream out) throws IOException {
+        out.writeLong(shard.from);
+        out.writeLong(shard.to);
+        out.flush();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[FizzBuzz.BUFFER_SIZE];
+        for (int length = in.readInt(); length > 0; length = in.readInt()) {
+            while (length > 0) {
+                int read = Math.min(length, buffer.length);
+                in.readFully(buffer, 0, read);
+                bytes.write(buffer, 0, read);
+                length -= read;
+            }
+        }
+        long[] counts = new long[ruleSet.results().length + 1];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = in.readLong();
+        }
+        return new ShardResult(bytes.toByteArray(), counts);
+    }
+
+    private static ShardResult await(Shard shard, CompletableFuture<Void> failed)
+            throws IOException, InterruptedException {
+        try {
+            CompletableFuture.anyOf(shard.result, failed).get();
+            return shard.result.get();
+        } catch (ExecutionException e) {
+            throw (e.getCause() instanceof IOException)
+                    ? (IOException) e.getCause()
+                    : new IOException("Shard failed", e.getCause());
+        }
+    }
+
+    private static final class Shard {
+
+        private static final Shard END = new Shard(0, 0);
+
+        private final long from;
+        private final long to;
+        private final CompletableFuture<ShardResult> result = new CompletableFuture<>();
+
+        private Shard(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    private static final class ShardResult {
+
+        private final byte[] bytes;
+        private final long[] counts;
+
+        private ShardResult(byte[] bytes, long[] counts) {
+            this.bytes = bytes;
+            this.counts = counts;
+        }
+    }
+}
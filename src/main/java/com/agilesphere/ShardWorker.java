@@ -0,0 +1,138 @@
+package com.agilesphere;
+
+import com.agilesphere.rules.ContainsDigitRule;
+import com.agilesphere.rules.DivisibleRule;
+import com.agilesphere.rules.Rule;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.agilesphere.rules.Rules.containsDigit;
+import static com.agilesphere.rules.Rules.divisibleBy;
+
+/**
+ * A worker process that renders shards for a {@link ShardCoordinator}.
+ * The worker connects to the coordinator on the loopback interface and
+ * receives the rules in order of precedence, then renders each shard it
+ * is sent until it is sent a shard starting at 0:
+ *
+ *   request   shard from and to as longs
+ *   response  the UTF-8 output of the shard as int length prefixed
+ *             chunks ending with a zero length, then the statistics
+ *             counters of the shard as longs
+ *
+ * Rules are sent as their kind and parameters, so only divisibility
+ * and digit rules can be distributed.
+ */
+final class ShardWorker {
+
+    static final String WORKER = "--worker";
+
+    private static final byte DIVISIBLE = 'D';
+    private static final byte CONTAINS_DIGIT = 'C';
+
+    private ShardWorker() {}
+
+    /**
+     * Runs a worker from command line arguments of the form
+     * '--worker --port port [--exit-after shards]'. A worker told to
+     * exit after a number of shards halts without replying when sent
+     * the next one, and one told to exit after a negative number halts
+     * before connecting, for testing recovery from worker failure.
+     * @param args The command line arguments.
+     * @throws IOException if the coordinator cannot be reached.
+     */
+    static void run(String[] args) throws IOException {
+        int port = 0;
+        int exitAfter = 0;
+        for (int i = 0; i + 1 < args.length; i++) {
+            if (args[i].equals("--port")) port = Integer.parseInt(args[++i]);
+            else if (args[i].equals("--exit-after")) exitAfter = Integer.parseInt(args[++i]);
+        }
+        if (exitAfter < 0) Runtime.getRuntime().halt(1);
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            RuleSet ruleSet = new RuleSet(readRules(in));
+            for (int shards = 0; ; shards++) {
+                long from = in.readLong();
+                if (from == 0) return;
+                long to = in.readLong();
+                if (exitAfter > 0 && shards == exitAfter) Runtime.getRuntime().halt(1);
+                render(ruleSet, from, to, out);
+            }
+        }
+    }
+
+    private static void render(RuleSet ruleSet, long from, long to, DataOutputStream out) throws IOException {
+        Statistics statistics = ruleSet.newStatistics();
+        TokenEncoder encoder = new TokenEncoder(ruleSet.results(), bytes -> {
+            out.writeInt(bytes.remaining());
+            out.write(bytes.array(), bytes.arrayOffset() + bytes.position(), bytes.remaining());
+        });
+        ruleSet.render(from, to, encoder, statistics);
+        encoder.flush();
+        out.writeInt(0);
+        for (int i = 0; i < statistics.size(); i++) {
+            out.writeLong(statistics.count(i));
+        }
+        out.flush();
+    }
+
+    /**
+     * Whether a rule can be sent to a worker.
+     * @param rule The rule.
+     * @return true for divisibility and digit rules
+     */
+    static boolean isDistributable(Rule rule) {
+        return rule instanceof DivisibleRule || rule instanceof ContainsDigitRule;
+    }
+
+    /**
+     * Writes rules as their kind and parameters.
+     * @param rules The rules in order of precedence.
+     * @param out The stream to write to.
+     * @throws IOException if the stream cannot be written to.
+     */
+    static void writeRules(List<Rule> rules, DataOutputStream out) throws IOException {
+        out.writeInt(rules.size());
+        for (Rule rule : rules) {
+            if (rule instanceof DivisibleRule) {
+                out.writeByte(DIVISIBLE);
+                out.writeInt(((DivisibleRule) rule).divisor());
+            } else {
+                ContainsDigitRule digitRule = (ContainsDigitRule) rule;
+                out.writeByte(CONTAINS_DIGIT);
+                out.writeInt(digitRule.digit());
+                out.writeInt(digitRule.base());
+            }
+            out.writeUTF(rule.result());
+        }
+    }
+
+    private static List<Rule> readRules(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<Rule> rules = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte kind = in.readByte();
+            if (kind == DIVISIBLE) {
+                int divisor = in.readInt();
+                rules.add(divisibleBy(divisor, in.readUTF()));
+            } else if (kind == CONTAINS_DIGIT) {
+                int digit = in.readInt();
+                int base = in.readInt();
+                rules.add(containsDigit(digit, base, in.readUTF()));
+            } else {
+                throw new IOException("Unknown rule kind " + kind);
+            }
+        }
+        return rules;
+    }
+}
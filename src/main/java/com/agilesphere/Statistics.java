@@ -0,0 +1,121 @@
+package com.agilesphere;
+
+import com.agilesphere.rules.Rule;
+import com.google.common.primitives.Ints;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static java.util.stream.Collectors.joining;
+
+/**
+ * Accumulates FizzBuzz statistics as primitive counters indexed by
+ * rule position in order of precedence, with a final counter for
+ * values that did not match any rule and were output as numbers.
+ */
+final class Statistics {
+
+    static final String NUMBER = "number";
+
+    private final String[] keys;
+    private final long[] counts;
+
+    /**
+     * Creates empty statistics for the given rules.
+     * @param rules The rules in order of precedence.
+     */
+    Statistics(List<Rule> rules) {
+        this(rules.stream().map(Rule::result).toArray(String[]::new));
+    }
+
+    /**
+     * Creates empty statistics for rules with the given results.
+     * @param results The rule results in order of precedence.
+     */
+    Statistics(String[] results) {
+        this.keys = new String[results.length + 1];
+        for (int i = 0; i < results.length; i++) {
+            keys[i] = key(results[i]);
+        }
+        this.keys[results.length] = NUMBER;
+        this.counts = new long[keys.length];
+    }
+
+    /**
+     * Increment the counter for the rule at the given index
+     * or the number counter if index equals the rule count.
+     * @param index The rule index.
+     */
+    void increment(int index) {
+        counts[index]++;
+    }
+
+    /**
+     * The counter for the rule at the given index
+     * or the number counter if index equals the rule count.
+     * @param index The rule index.
+     * @return the count
+     */
+    long count(int index) {
+        return counts[index];
+    }
+
+    /**
+     * The number of counters, one per rule and one for numbers.
+     * @return the counter count
+     */
+    int size() {
+        return counts.length;
+    }
+
+    /**
+     * The statistics key that the counter at the given index is
+     * formatted under, the rule result or 'number'.
+     * @param index The rule index.
+     * @return the key
+     */
+    String key(int index) {
+        return keys[index];
+    }
+
+    /**
+     * Add counters indexed by rule position to these statistics.
+     * @param counts The counters to add.
+     */
+    void add(long[] counts) {
+        for (int i = 0; i < counts.length; i++) {
+            this.counts[i] += counts[i];
+        }
+    }
+
+    /**
+     * Add the counters of other statistics for the same rules.
+     * @param other The statistics to add.
+     */
+    void add(Statistics other) {
+        add(other.counts);
+    }
+
+    /**
+     * Formats the statistics as sorted 'result: count' lines.
+     * Counters for rules with the same result are combined and
+     * counters that are zero are omitted.
+     * @return The formatted statistics.
+     */
+    String format() {
+        Map<String, Long> frequencies = new TreeMap<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) frequencies.merge(keys[i], counts[i], Long::sum);
+        }
+        return frequencies.entrySet()
+                .stream()
+                .map(entry -> entry.getKey() + ": " + entry.getValue())
+                .sorted()
+                .collect(joining(FizzBuzz.LINE_SEPARATOR));
+    }
+
+    private static String key(String result) {
+        return (Ints.tryParse(result) != null) ? NUMBER : result;
+    }
+}
@@ -0,0 +1,60 @@
+package com.agilesphere;
+
+import java.io.IOException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A token sink that appends characters to an Appendable through a
+ * fixed size chunk.
+ */
+final class TokenAppender implements TokenSink {
+
+    private final String[] results;
+    private final Appendable out;
+    private final StringBuilder chunk = new StringBuilder(FizzBuzz.BUFFER_SIZE);
+    private boolean first = true;
+
+    TokenAppender(String[] results, Appendable out) {
+        this.results = results;
+        this.out = out;
+    }
+
+    @Override
+    public void token(int index, long value) throws IOException {
+        if (first) {
+            first = false;
+        } else {
+            chunk.append(' ');
+        }
+        if (index == results.length) {
+            chunk.append(value);
+        } else {
+            chunk.append(results[index]);
+        }
+        if (chunk.length() >= FizzBuzz.BUFFER_SIZE) flush();
+    }
+
+    @Override
+    public void tokens(byte[] encoded) throws IOException {
+        if (first) {
+            first = false;
+        } else {
+            chunk.append(' ');
+        }
+        flush();
+        out.append(new String(encoded, UTF_8));
+    }
+
+    @Override
+    public void text(String text) throws IOException {
+        chunk.append(text);
+        if (chunk.length() >= FizzBuzz.BUFFER_SIZE) flush();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.append(chunk);
+        chunk.setLength(0);
+    }
+}
@@ -0,0 +1,140 @@
+package com.agilesphere;
+
+import com.agilesphere.utils.DecimalOdometer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A token sink that encodes tokens as UTF-8 bytes directly into a
+ * reusable buffer. Rule results are encoded once up front and numbers
+ * are written as ASCII digits, so encoding a token does not allocate.
+ * The buffer is handed to a {@link ByteSink} whenever it fills.
+ */
+final class TokenEncoder implements TokenSink {
+
+    private static final byte SPACE = ' ';
+    private static final int MAX_DIGITS = 19;
+
+    /**
+     * A destination for encoded bytes.
+     */
+    interface ByteSink {
+
+        /**
+         * Write all remaining bytes of the buffer.
+         * @param bytes The bytes to write.
+         * @throws IOException if the bytes cannot be written.
+         */
+        void write(ByteBuffer bytes) throws IOException;
+    }
+
+    private final byte[][] words;
+    private final ByteSink sink;
+    private final byte[] buffer;
+    private final ByteBuffer view;
+    private final int limit;
+    private int position;
+    private boolean first = true;
+
+    TokenEncoder(String[] results, ByteSink sink) {
+        this.words = new byte[results.length][];
+        int longest = MAX_DIGITS;
+        for (int i = 0; i < results.length; i++) {
+            words[i] = results[i].getBytes(UTF_8);
+            longest = Math.max(longest, words[i].length);
+        }
+        this.sink = sink;
+        this.buffer = new byte[Math.max(FizzBuzz.BUFFER_SIZE, 2 * (longest + 1))];
+        this.view = ByteBuffer.wrap(buffer);
+        this.limit = buffer.length - (longest + 1);
+    }
+
+    @Override
+    public void token(int index, long value) throws IOException {
+        if (position > limit) flush();
+        if (first) {
+            first = false;
+        } else {
+            buffer[position++] = SPACE;
+        }
+        if (index == words.length) {
+            putDigits(value);
+        } else {
+            byte[] word = words[index];
+            System.arraycopy(word, 0, buffer, position, word.length);
+            position += word.length;
+        }
+    }
+
+    @Override
+    public void token(int index, long value, DecimalOdometer odometer) throws IOException {
+        if (index != words.length) {
+            token(index, value);
+            return;
+        }
+        if (position > limit) flush();
+        if (first) {
+            first = false;
+        } else {
+            buffer[position++] = SPACE;
+        }
+        position += odometer.copyTo(buffer, position);
+    }
+
+    @Override
+    public void tokens(byte[] encoded) throws IOException {
+        if (position > limit) flush();
+        if (first) {
+            first = false;
+        } else {
+            buffer[position++] = SPACE;
+        }
+        flush();
+        sink.write(ByteBuffer.wrap(encoded));
+    }
+
+    @Override
+    public void text(String text) throws IOException {
+        flush();
+        sink.write(ByteBuffer.wrap(text.getBytes(UTF_8)));
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (position == 0) return;
+        view.clear();
+        view.limit(position);
+        sink.write(view);
+        position = 0;
+    }
+
+    private void putDigits(long value) {
+        int end = position + digitCount(value);
+        int i = end - 1;
+        while (value > Integer.MAX_VALUE) {
+            buffer[i--] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        for (int remaining = (int) value; i >= position; i--) {
+            buffer[i] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+        position = end;
+    }
+
+    /**
+     * The number of decimal digits in a positive value.
+     * @param value The positive value.
+     * @return the digit count
+     */
+    static int digitCount(long value) {
+        int count = 1;
+        for (long bound = 10; bound <= value && count < MAX_DIGITS; bound *= 10) {
+            count++;
+        }
+        return count;
+    }
+}
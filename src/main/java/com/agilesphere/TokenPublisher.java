@@ -0,0 +1,93 @@
+package com.agilesphere;
+
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Publishes the tokens of a range to each subscriber no faster than it
+ * requests them. Each subscription traverses the range from the start
+ * with its own spliterator, so nothing is buffered beyond the token being
+ * delivered and a slow subscriber holds back only itself. Tokens are
+ * delivered on the thread that requests them, one thread at a time, and
+ * a request made from within {@link Flow.Subscriber#onNext(Object)} adds
+ * to the demand being delivered instead of recursing.
+ */
+final class TokenPublisher implements Flow.Publisher<CharSequence> {
+
+    private final Supplier<Spliterator<CharSequence>> tokens;
+
+    /**
+     * Creates a publisher.
+     * @param tokens A supplier of a new spliterator over the tokens for each subscriber.
+     */
+    TokenPublisher(Supplier<Spliterator<CharSequence>> tokens) {
+        this.tokens = tokens;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super CharSequence> subscriber) {
+        checkNotNull(subscriber, "Subscriber cannot be null");
+        subscriber.onSubscribe(new TokenSubscription(subscriber, tokens.get()));
+    }
+
+    private static final class TokenSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super CharSequence> subscriber;
+        private final Spliterator<CharSequence> tokens;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger work = new AtomicInteger();
+        private volatile boolean done;
+        private volatile IllegalArgumentException failure;
+
+        private TokenSubscription(Flow.Subscriber<? super CharSequence> subscriber, Spliterator<CharSequence> tokens) {
+            this.subscriber = subscriber;
+            this.tokens = tokens;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                failure = new IllegalArgumentException("Request must be positive - n(" + n + ")");
+            } else {
+                demand.accumulateAndGet(n, (current, added) -> (current + added < 0) ? Long.MAX_VALUE : current + added);
+            }
+            deliver();
+        }
+
+        @Override
+        public void cancel() {
+            done = true;
+        }
+
+        private void deliver() {
+            if (work.getAndIncrement() != 0) return;
+            Consumer<CharSequence> onNext = subscriber::onNext;
+            int missed = 1;
+            do {
+                long requested = demand.get();
+                long delivered = 0;
+                while (!done) {
+                    if (failure != null) {
+                        done = true;
+                        subscriber.onError(failure);
+                    } else if (tokens.estimateSize() == 0) {
+                        done = true;
+                        subscriber.onComplete();
+                    } else if (delivered == requested) {
+                        break;
+                    } else {
+                        tokens.tryAdvance(onNext);
+                        delivered++;
+                    }
+                }
+                if (requested != Long.MAX_VALUE) demand.addAndGet(-delivered);
+                missed = work.addAndGet(-missed);
+            } while (missed != 0);
+        }
+    }
+}
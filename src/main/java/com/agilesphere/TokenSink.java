@@ -0,0 +1,56 @@
+package com.agilesphere;
+
+import com.agilesphere.utils.DecimalOdometer;
+
+import java.io.IOException;
+
+/**
+ * A destination for FizzBuzz tokens. Tokens are passed as the index of
+ * the winning rule together with the value so that sinks can render
+ * rule results and numbers without intermediate strings. Sinks separate
+ * consecutive tokens with a space.
+ */
+interface TokenSink {
+
+    /**
+     * Append the token for a value.
+     * @param index The winning rule index, or the rule count for numbers.
+     * @param value The value.
+     * @throws IOException if the token cannot be written.
+     */
+    void token(int index, long value) throws IOException;
+
+    /**
+     * Append the token for a value whose decimal digits are shown by an
+     * odometer. Sinks that can copy the digits override this to avoid
+     * formatting numbers.
+     * @param index The winning rule index, or the rule count for numbers.
+     * @param value The value.
+     * @param odometer The odometer showing the value.
+     * @throws IOException if the token cannot be written.
+     */
+    default void token(int index, long value, DecimalOdometer odometer) throws IOException {
+        token(index, value);
+    }
+
+    /**
+     * Append already rendered tokens, separated from any previous token.
+     * @param encoded The UTF-8 encoded tokens separated by spaces.
+     * @throws IOException if the tokens cannot be written.
+     */
+    void tokens(byte[] encoded) throws IOException;
+
+    /**
+     * Append text verbatim, without a separator.
+     * @param text The text to append.
+     * @throws IOException if the text cannot be written.
+     */
+    void text(String text) throws IOException;
+
+    /**
+     * Write any buffered output to the destination.
+     * @throws IOException if the output cannot be written.
+     */
+    void flush() throws IOException;
+
+}
@@ -0,0 +1,144 @@
+package com.agilesphere;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * An object for traversing and partitioning a range of values as the
+ * index of the winning rule for each value, or the rule count for values
+ * output as numbers. The range splits evenly at its midpoint and both
+ * halves know their exact size, so parallel streams divide the work
+ * evenly however deeply they split. Tokens are classified lazily as
+ * the range is traversed and no output is buffered.
+ */
+final class TokenSpliterator implements Spliterator.OfInt {
+
+    private static final int CHARACTERISTICS = ORDERED | SIZED | SUBSIZED | IMMUTABLE | NONNULL;
+
+    private final RuleTable ruleTable;
+    private final String[] results;
+    private long next;
+    private long remaining;
+    private int residue;
+
+    /**
+     * Creates a spliterator over the range.
+     * @param ruleTable The compiled rules.
+     * @param results The result text of each rule in order of precedence.
+     * @param from The start value of the range.
+     * @param to The end value of the range.
+     */
+    TokenSpliterator(RuleTable ruleTable, String[] results, long from, long to) {
+        this(ruleTable, results, from, to - from + 1, ruleTable.residueOf(from));
+    }
+
+    private TokenSpliterator(RuleTable ruleTable, String[] results, long next, long remaining, int residue) {
+        this.ruleTable = ruleTable;
+        this.results = results;
+        this.next = next;
+        this.remaining = remaining;
+        this.residue = residue;
+    }
+
+    /**
+     * A view of the remaining range as output tokens, the rule result
+     * or the value as a number, that splits as this spliterator does.
+     * @return a token spliterator
+     */
+    Spliterator<CharSequence> tokens() {
+        return new Tokens(this);
+    }
+
+    @Override
+    public boolean tryAdvance(IntConsumer action) {
+        if (remaining == 0) return false;
+        action.accept(nextIndex());
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(IntConsumer action) {
+        int cycle = ruleTable.cycle();
+        for (long value = next, end = next + remaining; value != end; value++) {
+            action.accept(ruleTable.ruleIndex(value, residue));
+            if (++residue == cycle) residue = 0;
+        }
+        next += remaining;
+        remaining = 0;
+    }
+
+    @Override
+    public OfInt trySplit() {
+        long half = remaining >>> 1;
+        if (half == 0) return null;
+        TokenSpliterator prefix = new TokenSpliterator(ruleTable, results, next, half, residue);
+        next += half;
+        remaining -= half;
+        residue = ruleTable.residueOf(next);
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return remaining;
+    }
+
+    @Override
+    public int characteristics() {
+        return CHARACTERISTICS;
+    }
+
+    private int nextIndex() {
+        int index = ruleTable.ruleIndex(next, residue);
+        if (++residue == ruleTable.cycle()) residue = 0;
+        next++;
+        remaining--;
+        return index;
+    }
+
+    private CharSequence token(int index, long value) {
+        return (index == results.length) ? String.valueOf(value) : results[index];
+    }
+
+    private static final class Tokens implements Spliterator<CharSequence> {
+
+        private final TokenSpliterator indices;
+
+        private Tokens(TokenSpliterator indices) {
+            this.indices = indices;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super CharSequence> action) {
+            if (indices.remaining == 0) return false;
+            long value = indices.next;
+            action.accept(indices.token(indices.nextIndex(), value));
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super CharSequence> action) {
+            while (indices.remaining > 0) {
+                long value = indices.next;
+                action.accept(indices.token(indices.nextIndex(), value));
+            }
+        }
+
+        @Override
+        public Spliterator<CharSequence> trySplit() {
+            TokenSpliterator prefix = (TokenSpliterator) indices.trySplit();
+            return (prefix == null) ? null : new Tokens(prefix);
+        }
+
+        @Override
+        public long estimateSize() {
+            return indices.remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return CHARACTERISTICS;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.agilesphere.rules;
+
+import com.google.common.base.Objects;
+
+import java.util.function.IntPredicate;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A rule that will match any value that contains a given
+ * digit in its representation in a given base. Because
+ * matching depends only on the digits of the value the
+ * frequency of matches over a range can be calculated digit
+ * by digit without visiting each value.
+ *
+ * Values are matched without allocation by looking up blocks
+ * of digits in precomputed tables, one block per division.
+ * Zero and negative values are treated as having no digits.
+ */
+public final class ContainsDigitRule implements LongRule {
+
+    static final int MAX_TABLE_SIZE = 1 << 14;
+
+    private final int digit;
+    private final int base;
+    private final String result;
+    private final IntPredicate equalsDigit;
+    private final int block;
+    private final boolean[] padded;
+    private final boolean[] leading;
+
+    ContainsDigitRule(int digit, int base, String result) {
+        checkArgument(base >= 2 && base <= Character.MAX_RADIX,
+                "Base must be between 2 and %s - base(%s)", Character.MAX_RADIX, base);
+        checkArgument(digit >= 0 && digit < base, "Digit must be between 0 and %s - digit(%s)", base - 1, digit);
+        this.digit = digit;
+        this.base = base;
+        this.result = result;
+        this.equalsDigit = i -> i == digit;
+        int block = base;
+        while (block * base <= MAX_TABLE_SIZE) block *= base;
+        this.block = block;
+        this.leading = new boolean[block];
+        this.padded = (digit == 0) ? new boolean[block] : leading;
+        for (int value = 0; value < block; value++) {
+            for (int rest = value; rest > 0 && !leading[value]; rest /= base) {
+                leading[value] = (rest % base == digit);
+            }
+            // blocks below the most significant one keep their leading zeros
+            if (digit == 0) padded[value] = leading[value] || value < block / base;
+        }
+    }
+
+    @Override
+    public boolean matches(int value) {
+        if (value <= 0) return false;
+        while (value >= block) {
+            if (padded[value % block]) return true;
+            value /= block;
+        }
+        return leading[value];
+    }
+
+    @Override
+    public boolean matches(long value) {
+        if (value <= 0) return false;
+        while (value > Integer.MAX_VALUE) {
+            if (padded[(int) (value % block)]) return true;
+            value /= block;
+        }
+        return matches((int) value);
+    }
+
+    @Override
+    public String result() {
+        return result;
+    }
+
+    @Override
+    public IntPredicate rule() {
+        return equalsDigit;
+    }
+
+    /**
+     * The digit that matching values contain.
+     * @return the digit
+     */
+    public int digit() {
+        return digit;
+    }
+
+    /**
+     * The base that values are represented in.
+     * @return the base
+     */
+    public int base() {
+        return base;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof ContainsDigitRule)) return false;
+        ContainsDigitRule that = (ContainsDigitRule) obj;
+        return (this.digit == that.digit) && (this.base == that.base) && this.result.equals(that.result);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(digit, base, result);
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(getClass())
+                .add("digit", digit)
+                .add("base", base)
+                .add("result", result)
+                .toString();
+    }
+}
@@ -0,0 +1,80 @@
+package com.agilesphere.rules;
+
+import com.google.common.base.Objects;
+
+import java.util.function.IntPredicate;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * A rule that will match any value that is divisible by a
+ * given divisor. Matching repeats with the divisor as period.
+ */
+public final class DivisibleRule implements PeriodicRule, LongRule {
+
+    private final int divisor;
+    private final String result;
+    private final IntPredicate divisible;
+
+    DivisibleRule(int divisor, String result) {
+        checkArgument(divisor > 0, "Divisor must be positive - divisor(%s)", divisor);
+        this.divisor = divisor;
+        this.result = result;
+        this.divisible = i -> i % divisor == 0;
+    }
+
+    @Override
+    public boolean matches(int value) {
+        return divisible.test(value);
+    }
+
+    @Override
+    public boolean matches(long value) {
+        return value % divisor == 0;
+    }
+
+    @Override
+    public String result() {
+        return result;
+    }
+
+    @Override
+    public IntPredicate rule() {
+        return divisible;
+    }
+
+    @Override
+    public int period() {
+        return divisor;
+    }
+
+    /**
+     * The divisor that matching values are divisible by.
+     * @return the divisor
+     */
+    public int divisor() {
+        return divisor;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (!(obj instanceof DivisibleRule)) return false;
+        DivisibleRule that = (DivisibleRule) obj;
+        return (this.divisor == that.divisor) && this.result.equals(that.result);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(divisor, result);
+    }
+
+    @Override
+    public String toString() {
+        return toStringHelper(getClass())
+                .add("divisor", divisor)
+                .add("result", result)
+                .toString();
+    }
+}
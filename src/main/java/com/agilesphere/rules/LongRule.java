@@ -0,0 +1,17 @@
+package com.agilesphere.rules;
+
+/**
+ * A rule that can match values beyond the range of an int, allowing
+ * FizzBuzz ranges up to {@link Long#MAX_VALUE}. Rules that only match
+ * int values can be adapted with {@link Rules#asLongRule(Rule)}.
+ */
+public interface LongRule extends Rule {
+
+    /**
+     * Determines if value matches the rule.
+     * @param value to be matched.
+     * @return true if the input value matches the rule, otherwise false
+     */
+    boolean matches(long value);
+
+}
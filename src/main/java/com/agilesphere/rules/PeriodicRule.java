@@ -0,0 +1,18 @@
+package com.agilesphere.rules;
+
+/**
+ * A rule whose matching repeats with a fixed period, such that a
+ * positive value matches the rule exactly when the value plus the
+ * period matches the rule. Periodic rules can be compiled into a
+ * lookup table indexed by value modulo the period and need not be
+ * evaluated for each value.
+ */
+public interface PeriodicRule extends Rule {
+
+    /**
+     * The period after which matching repeats.
+     * @return the positive period
+     */
+    int period();
+
+}
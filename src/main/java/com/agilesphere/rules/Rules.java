@@ -1,10 +1,6 @@
 package com.agilesphere.rules;
 
 import java.util.function.IntPredicate;
-import java.util.stream.IntStream;
-
-import static com.agilesphere.utils.DigitSpliterator.base10Spliterator;
-import static java.util.stream.StreamSupport.intStream;
 
 /**
  * This class consists exclusively of static members
@@ -15,108 +11,88 @@ public class Rules {
     public static final String FIZZ = "fizz";
     public static final String BUZZ = "buzz";
     public static final String FIZZBUZZ = FIZZ + BUZZ;
+    public static final String LUCK = "luck";
 
 
     /**
      * Core rule that will match any value that is
      * divisible by 3 and will return the string 'fizz'.
      */
-    public static final Rule FIZZ_RULE = new Rule() {
-
-        final IntPredicate DIVISIBLE_BY_3 = i -> i % 3 == 0;
-
-        @Override
-        public boolean matches(int value) {
-            return DIVISIBLE_BY_3.test(value);
-        }
-
-        @Override
-        public String result() {
-            return FIZZ;
-        }
-
-        @Override
-        public IntPredicate rule() {
-            return DIVISIBLE_BY_3;
-        }
-    };
+    public static final Rule FIZZ_RULE = divisibleBy(3, FIZZ);
 
     /**
      * Core rule that will match any value that is
      * divisible by 5 and will return the string 'buzz'.
      */
-    public static final Rule BUZZ_RULE = new Rule() {
-
-        final IntPredicate DIVISIBLE_BY_5 = i -> i % 5 == 0;
-
-        @Override
-        public boolean matches(int value) {
-            return DIVISIBLE_BY_5.test(value);
-        }
-
-        @Override
-        public String result() {
-            return BUZZ;
-        }
-
-        @Override
-        public IntPredicate rule() {
-            return DIVISIBLE_BY_5;
-        }
-    };
+    public static final Rule BUZZ_RULE = divisibleBy(5, BUZZ);
 
     /**
      * Core rule that will match any value that is divisible
      * by both 3 and 5 and will return the string 'fizzbuzz'.
      */
-    public static final Rule FIZZBUZZ_RULE = new Rule() {
-
-        final IntPredicate DIVISIBLE_BY_3_AND_5 = FIZZ_RULE.rule().and(BUZZ_RULE.rule());
+    public static final Rule FIZZBUZZ_RULE = divisibleBy(3 * 5, FIZZBUZZ);
 
-        @Override
-        public boolean matches(int value) {
-            return DIVISIBLE_BY_3_AND_5.test(value);
-        }
+    /**
+     * Override rule that will match any value that contains a
+     * three and will return the string 'luck'.
+     */
+    public static final Rule LUCK_RULE = containsDigit(3, 10, LUCK);
 
-        @Override
-        public String result() {
-            return FIZZBUZZ;
-        }
+    /**
+     * Creates a rule that will match any value that is
+     * divisible by the divisor and will return the result.
+     * @param divisor The positive divisor.
+     * @param result The rule result text.
+     * @return A divisibility rule
+     */
+    public static Rule divisibleBy(int divisor, String result) {
+        return new DivisibleRule(divisor, result);
+    }
 
-        @Override
-        public IntPredicate rule() {
-            return DIVISIBLE_BY_3_AND_5;
-        }
-    };
+    /**
+     * Creates a rule that will match any value that contains
+     * the digit in its representation in the base and will
+     * return the result.
+     * @param digit The digit, from zero up to the base.
+     * @param base The base, from 2 to 36.
+     * @param result The rule result text.
+     * @return A digit containment rule
+     */
+    public static Rule containsDigit(int digit, int base, String result) {
+        return new ContainsDigitRule(digit, base, result);
+    }
 
     /**
-     * Override rule that will match any value that contains a
-     * three and will return the string 'luck'.
+     * Adapts a rule to match long values. Rules that already
+     * support long values are returned unchanged, otherwise
+     * values are narrowed to int and must be in int range.
+     * @param rule The rule to adapt.
+     * @return A rule that matches long values
      */
-    public static final Rule LUCK_RULE = new Rule() {
-
-        private static final String LUCK = "luck";
-        private final IntPredicate EQUALS_3 = i -> i == 3;
-
-        @Override
-        public boolean matches(int value) {
-            return containsThree(value);
-        }
-
-        @Override
-        public String result() {
-            return LUCK;
-        }
-
-        @Override
-        public IntPredicate rule() {
-            return EQUALS_3;
-        }
-
-        private boolean containsThree(int i) {
-            IntStream digitStream = intStream(base10Spliterator(i), false);
-            return digitStream.anyMatch(EQUALS_3);
-        }
-    };
+    public static LongRule asLongRule(Rule rule) {
+        if (rule instanceof LongRule) return (LongRule) rule;
+        return new LongRule() {
+
+            @Override
+            public boolean matches(long value) {
+                return rule.matches(Math.toIntExact(value));
+            }
+
+            @Override
+            public boolean matches(int value) {
+                return rule.matches(value);
+            }
+
+            @Override
+            public String result() {
+                return rule.result();
+            }
+
+            @Override
+            public IntPredicate rule() {
+                return rule.rule();
+            }
+        };
+    }
 
 }
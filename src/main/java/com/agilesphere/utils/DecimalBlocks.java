@@ -0,0 +1,112 @@
+package com.agilesphere.utils;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Steps over blocks of positive decimal values by whether they contain
+ * a digit. The values that share every digit above some position form a
+ * block, and when one of those shared digits is the digit sought every
+ * value in the block contains it, so searches jump from block to block
+ * rather than testing each value. Results beyond Long.MAX_VALUE are
+ * returned as 0.
+ */
+public final class DecimalBlocks {
+
+    private static final int MAX_DIGITS = 19;
+    private static final long[] POWERS = new long[MAX_DIGITS];
+    private static final long[] REPUNITS = new long[MAX_DIGITS];
+
+    static {
+        POWERS[0] = 1;
+        for (int i = 1; i < MAX_DIGITS; i++) {
+            POWERS[i] = POWERS[i - 1] * 10;
+            REPUNITS[i] = REPUNITS[i - 1] * 10 + 1;
+        }
+    }
+
+    private DecimalBlocks() {}
+
+    /**
+     * Whether the decimal digits of a value include a digit.
+     * @param value The positive value.
+     * @param digit The digit from 0 to 9.
+     * @return true if the digit occurs in the value
+     */
+    public static boolean contains(long value, int digit) {
+        checkArguments(value, digit);
+        for (long rest = value; rest > 0; rest /= 10) {
+            if (rest % 10 == digit) return true;
+        }
+        return false;
+    }
+
+    /**
+     * The smallest value that is not less than the value and contains
+     * the digit. Each position is tried in turn, either raised to the
+     * digit or, when it is already past the digit, set to the digit in
+     * the next block up, with the positions below it cleared.
+     * @param value The positive value.
+     * @param digit The digit from 0 to 9.
+     * @return the next value containing the digit, or 0 if there is none
+     */
+    public static long nextContaining(long value, int digit) {
+        checkArguments(value, digit);
+        long best = 0;
+        for (int i = 0; i < MAX_DIGITS; i++) {
+            long power = POWERS[i];
+            boolean top = (i == MAX_DIGITS - 1);
+            long above = top ? 0 : value / (power * 10);
+            int current = (int) (value / power % 10);
+            if (current == digit && (digit != 0 || above > 0)) return value;
+            long block = above * power * 10;
+            long next;
+            if (current < digit) {
+                next = block + digit * power;
+            } else if (top) {
+                next = -1;
+            } else {
+                long nextBlock = block + power * 10;
+                next = (nextBlock < 0) ? -1 : nextBlock + digit * power;
+            }
+            if (next > 0 && (best == 0 || next < best)) best = next;
+            if (value / power == 0) break;
+        }
+        return best;
+    }
+
+    /**
+     * The smallest value that is not less than the value and does not
+     * contain the digit. The most significant occurrence of the digit is
+     * stepped past, skipping the whole block of values below it, until
+     * no occurrence is left.
+     * @param value The positive value.
+     * @param digit The digit from 0 to 9.
+     * @return the next value without the digit, or 0 if there is none
+     */
+    public static long nextWithout(long value, int digit) {
+        checkArguments(value, digit);
+        long next = value;
+        for (int i = highest(next, digit); i >= 0; i = highest(next, digit)) {
+            long power = POWERS[i];
+            long stepped = (next / power + 1) * power;
+            if (stepped < 0) return 0;
+            next = stepped + ((digit == 0) ? REPUNITS[i] : 0);
+            if (next < 0) return 0;
+        }
+        return next;
+    }
+
+    private static int highest(long value, int digit) {
+        int highest = -1;
+        int i = 0;
+        for (long rest = value; rest > 0; rest /= 10, i++) {
+            if (rest % 10 == digit) highest = i;
+        }
+        return highest;
+    }
+
+    private static void checkArguments(long value, int digit) {
+        checkArgument(value > 0, "Value must be positive - value(%s)", value);
+        checkArgument(digit >= 0 && digit <= 9, "Digit must be from 0 to 9 - digit(%s)", digit);
+    }
+}
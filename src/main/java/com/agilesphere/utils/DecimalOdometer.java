@@ -0,0 +1,99 @@
+package com.agilesphere.utils;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * A positive decimal counter held as ASCII digits that is incremented
+ * in place with carry, for walking an ascending range without formatting
+ * each value from scratch. The number of occurrences of each digit is
+ * kept up to date as the counter turns, so whether the current value
+ * contains a digit is a single lookup.
+ */
+public final class DecimalOdometer {
+
+    private static final int MAX_DIGITS = 19;
+
+    private final byte[] digits = new byte[MAX_DIGITS];
+    private final int[] counts = new int[10];
+    private int start = MAX_DIGITS;
+
+    /**
+     * Creates an odometer showing the value.
+     * @param value The positive start value.
+     */
+    public DecimalOdometer(long value) {
+        checkArgument(value > 0, "Value must be positive - value(%s)", value);
+        for (long rest = value; rest > 0; rest /= 10) {
+            int digit = (int) (rest % 10);
+            digits[--start] = (byte) ('0' + digit);
+            counts[digit]++;
+        }
+    }
+
+    /**
+     * Advances the odometer to the next value.
+     */
+    public void increment() {
+        int i = MAX_DIGITS - 1;
+        while (i >= start && digits[i] == '9') {
+            digits[i--] = '0';
+            counts[9]--;
+            counts[0]++;
+        }
+        if (i >= start) {
+            int digit = digits[i] - '0';
+            digits[i] = (byte) (digits[i] + 1);
+            counts[digit]--;
+            counts[digit + 1]++;
+        } else {
+            checkState(start > 0, "Odometer overflow after %s", this);
+            digits[--start] = '1';
+            counts[1]++;
+        }
+    }
+
+    /**
+     * The number of digits in the current value.
+     * @return the digit count
+     */
+    public int length() {
+        return MAX_DIGITS - start;
+    }
+
+    /**
+     * How often a digit occurs in the current value.
+     * @param digit The digit from 0 to 9.
+     * @return the number of occurrences
+     */
+    public int count(int digit) {
+        return counts[digit];
+    }
+
+    /**
+     * Whether the current value contains a digit.
+     * @param digit The digit from 0 to 9.
+     * @return true if the digit occurs in the value
+     */
+    public boolean contains(int digit) {
+        return counts[digit] > 0;
+    }
+
+    /**
+     * Copies the ASCII digits of the current value into an array.
+     * @param destination The array to copy into.
+     * @param offset The position of the most significant digit.
+     * @return the number of digits copied
+     */
+    public int copyTo(byte[] destination, int offset) {
+        int length = MAX_DIGITS - start;
+        System.arraycopy(digits, start, destination, offset, length);
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        return new String(digits, start, MAX_DIGITS - start, US_ASCII);
+    }
+}
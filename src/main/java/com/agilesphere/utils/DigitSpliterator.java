@@ -9,11 +9,15 @@ import java.util.function.IntConsumer;
  */
 public class DigitSpliterator extends Spliterators.AbstractIntSpliterator {
 
-    private final int initialValue;
+    private final long initialValue;
     private final int base;
-    private int currValue;
+    private long currValue;
 
     public DigitSpliterator(int number, int base) {
+        this((long) number, base);
+    }
+
+    public DigitSpliterator(long number, int base) {
         super(String.valueOf(number).length(), ORDERED | SIZED | NONNULL);
         this.initialValue = number;
         this.base = base;
@@ -29,6 +33,15 @@ public class DigitSpliterator extends Spliterators.AbstractIntSpliterator {
         return new DigitSpliterator(number, 10);
     }
 
+    /**
+     * Factory method to create a base 10 spliterator for a long value.
+     * @param number Base 10 Numeric value to be partitioned
+     * @return A base 10 spliterator
+     */
+    public static DigitSpliterator base10Spliterator(long number) {
+        return new DigitSpliterator(number, 10);
+    }
+
     @Override
     public boolean tryAdvance(IntConsumer action) {
         if (currValue == 0) return false;
@@ -40,7 +53,7 @@ public class DigitSpliterator extends Spliterators.AbstractIntSpliterator {
     }
 
     private int nextDigit() {
-        return currValue % base;
+        return (int) (currValue % base);
     }
 
 
@@ -0,0 +1,80 @@
+package com.agilesphere
+
+import spock.lang.Specification
+
+import static com.agilesphere.rules.Rules.*
+
+class BatchEvaluatorSpec extends Specification {
+
+    def "should produce the same output as evaluating each query on its own"() {
+        given:
+        def queries = ranges.collect { from, to -> Query.range(from, to).withOverrideRule(LUCK_RULE).withStatistics() }
+
+        when:
+        def outputs = FizzBuzz.evaluateAll(queries)
+
+        then:
+        outputs*.toString() == queries.collect { expected(it) }
+
+        where:
+        ranges << [
+                [[1, 20]],
+                [[1, 20], [10, 30]],
+                [[1, 10], [11, 20]],
+                [[1, 10], [50, 60]],
+                [[5, 100], [1, 1000], [20, 30]],
+                [[7, 7], [7, 7]],
+                [[Long.MAX_VALUE - 100, Long.MAX_VALUE], [Long.MAX_VALUE - 10, Long.MAX_VALUE - 10]]
+        ]
+    }
+
+    def "should evaluate queries with different rules and statistics separately"() {
+        given:
+        def queries = [
+                Query.range(1, 30),
+                Query.range(10, 40).withOverrideRule(LUCK_RULE),
+                Query.range(20, 50).withStatistics(),
+                Query.range(1, 30)
+        ]
+
+        when:
+        def outputs = FizzBuzz.evaluateAll(queries)
+
+        then:
+        outputs*.toString() == queries.collect { expected(it) }
+        outputs[3].length() == outputs[3].toString().length()
+        outputs[3].charAt(0) == '1' as char
+    }
+
+    def "should keep separators after an empty first token"() {
+        given:
+        def queries = [
+                Query.range(7, 30).withOverrideRule(divisibleBy(7, '')),
+                Query.range(14, 20).withOverrideRule(divisibleBy(7, '')).withStatistics()
+        ]
+
+        expect:
+        FizzBuzz.evaluateAll(queries)*.toString() == queries.collect { expected(it) }
+    }
+
+    def "should validate query ranges as FizzBuzz does"() {
+        when:
+        Query.range(from, to)
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == message
+
+        where:
+        from | to || message
+        0    | 5  || 'Inputs must be positive - from(0) to(5)'
+        6    | 5  || 'from(6) cannot be bigger than to(5)'
+    }
+
+    private static String expected(Query query) {
+        def builder = new FizzBuzz.Builder().from(query.from()).to(query.to())
+        query.overrideRules().each { builder.withOverrideRule(it) }
+        if (query.includesStatistics()) builder.withStatistics()
+        builder.build().output()
+    }
+}
@@ -0,0 +1,122 @@
+package com.agilesphere
+
+import com.agilesphere.rules.Rule
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+import static com.agilesphere.rules.Rules.*
+
+class ClassificationSpec extends Specification {
+
+    static final Rule SEVEN_RULE = containsDigit(7, 10, 'seven')
+
+    def "should classify every value as the rule indices"() {
+        given:
+        def builder = new FizzBuzz.Builder().from(from).to(to)
+        overrideRules.each { builder.withOverrideRule(it) }
+        def fizzBuzz = builder.build()
+        def indices = fizzBuzz.ruleIndices().toArray()
+
+        when:
+        def classification = Classification.build(new RuleSet(FizzBuzz.precedenceOrder(overrideRules)),
+                from, to, parallelism, wordsPerPage)
+
+        then:
+        (from..to).collect { classification.ruleIndex(it) } == indices.toList()
+        classification.bitsPerValue() == bits
+
+        where:
+        from   | to     | overrideRules           | parallelism | wordsPerPage | bits
+        1      | 100    | []                      | 1           | 1024         | 2
+        1      | 10_000 | [LUCK_RULE]             | 2           | 3            | 3
+        7      | 5000   | [LUCK_RULE, SEVEN_RULE] | 4           | 130          | 3
+        1      | 64     | []                      | 1           | 1            | 2
+    }
+
+    def "should count and rank values by rule"() {
+        given:
+        def classification = classification(1, 20_000)
+        def indices = (1..20_000).collect { classification.ruleIndex(it) }
+
+        expect:
+        (0..4).every { index ->
+            def running = 0
+            classification.count(index) == indices.count { it == index } &&
+                    (1..20_000).every { value ->
+                        if (indices[value - 1] == index) running++
+                        classification.rank(index, value) == running
+                    }
+        }
+    }
+
+    def "should select the value with each rank"() {
+        given:
+        def classification = classification(11, 20_000)
+
+        expect:
+        (0..4).every { index ->
+            def values = (11..20_000).findAll { classification.ruleIndex(it) == index }
+            values.indexed().every { rank, value -> classification.select(index, rank + 1) == value }
+        }
+    }
+
+    def "should count with the same statistics as the output"() {
+        given:
+        def fizzBuzz = new FizzBuzz.Builder().to(100_000).withOverrideRule(LUCK_RULE).parallel().build()
+        def classification = fizzBuzz.classify()
+        def results = classification.results()
+
+        expect:
+        results == ['luck', 'fizzbuzz', 'fizz', 'buzz']
+        (0..3).every { classification.count(it) == fizzBuzz.valuesProducing(results[it]).collect().size() }
+        classification.count(4) == 100_000 - (0..3).sum { classification.count(it) }
+        classification.offHeapBytes() == 8 * Math.ceil(100_000 / 21)
+    }
+
+    def "should read a saved classification back"() {
+        given:
+        def path = Files.createTempFile('classification', '.bin')
+        def classification = classification(5, 30_000)
+
+        when:
+        classification.writeTo(path)
+        def read = Classification.read(path)
+
+        then:
+        read.from() == 5
+        read.to() == 30_000
+        read.results() == classification.results()
+        (5..30_000).every { read.ruleIndex(it) == classification.ruleIndex(it) }
+        (0..4).every { read.count(it) == classification.count(it) }
+        read.select(4, 1000) == classification.select(4, 1000)
+
+        cleanup:
+        Files.deleteIfExists(path)
+    }
+
+    def "should reject values, indices and ranks out of range"() {
+        given:
+        def classification = classification(10, 100)
+
+        when:
+        query(classification)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        where:
+        query << [
+                { it.ruleIndex(9) },
+                { it.ruleIndex(101) },
+                { it.count(5) },
+                { it.rank(-1, 50) },
+                { it.select(0, 0) },
+                { it.select(0, it.count(0) + 1) }
+        ]
+    }
+
+    private static Classification classification(long from, long to) {
+        Classification.build(new RuleSet(FizzBuzz.precedenceOrder([LUCK_RULE])), from, to, 2, 5)
+    }
+}
@@ -3,6 +3,9 @@ package com.agilesphere
 import com.agilesphere.rules.Rule
 import spock.lang.Specification
 
+import static com.agilesphere.rules.Rules.LUCK_RULE
+import static java.nio.charset.StandardCharsets.UTF_8
+
 class FizzBuzzSpec extends Specification {
 
     def "should throw IllegalArgumentException when any combination of 'from' or 'to' parameters are zero or negative"() {
@@ -62,4 +65,138 @@ class FizzBuzzSpec extends Specification {
         fb.output() == "rule2"
     }
 
-}
\ No newline at end of file
+    static final Rule SEVENS = [
+            matches: { i -> i % 10 == 7 },
+            result: { "seven" },
+            rule: { i -> i % 10 == 7 }
+    ] as Rule
+
+    def "tokenAt and byteOffsetOf should locate each token in the output"() {
+        given:
+        def fb = builder.build()
+        def output = fb.output()
+        def tokens = output.split(' ')
+
+        expect:
+        (fb.@from..fb.@to).every { value ->
+            def offset = fb.byteOffsetOf(value)
+            def token = fb.tokenAt(value)
+            token == tokens[(int) (value - fb.@from)] && output.substring((int) offset, (int) offset + token.length()) == token
+        }
+
+        where:
+        builder << [
+                new FizzBuzz.Builder().from(1).to(20),
+                new FizzBuzz.Builder().from(95).to(1205).withOverrideRule(LUCK_RULE),
+                new FizzBuzz.Builder().from(3).to(9000).withOverrideRule(SEVENS)
+        ]
+    }
+
+    def "valueAtByteOffset should find the value whose token or following space contains the offset"() {
+        given:
+        def fb = builder.build()
+        def bytes = fb.output().getBytes(UTF_8)
+        def expected = []
+        def value = fb.@from
+        bytes.eachWithIndex { b, i ->
+            expected << value
+            if (b == (byte) ' ') value++
+        }
+
+        expect:
+        (0..<bytes.length).every { offset -> fb.valueAtByteOffset(offset) == expected[offset] }
+
+        where:
+        builder << [
+                new FizzBuzz.Builder().from(95).to(1205).withOverrideRule(LUCK_RULE),
+                new FizzBuzz.Builder().from(3).to(9000).withOverrideRule(SEVENS)
+        ]
+    }
+
+    def "slice should equal the same bytes of the output"() {
+        given:
+        def fb = new FizzBuzz.Builder().from(2).to(10000).withOverrideRule(rule).withStatistics().build()
+        def bytes = fb.output().getBytes(UTF_8)
+
+        expect:
+        fb.slice(start, end) == new String(Arrays.copyOfRange(bytes, start, end), UTF_8)
+
+        where:
+        [rule, start, end] << [[LUCK_RULE, SEVENS], [0, 1, 9, 17, 4095, 20000, 48880], [48880, 48890, 48951]]
+                .combinations()
+                .findAll { it[1] <= it[2] }
+    }
+
+    def "valueAtByteOffset should reject offsets beyond the tokens"() {
+        given:
+        def fb = new FizzBuzz.Builder().to(5).withStatistics().build()
+
+        when:
+        fb.valueAtByteOffset(15)
+
+        then:
+        IllegalArgumentException e = thrown()
+        e.message == 'Offset must be within output before statistics - offset(15) length(15)'
+    }
+
+    def "extendTo should produce the same output and statistics as a fresh instance"() {
+        given:
+        def fb = builder.build()
+        fb.output()
+
+        when:
+        def extended = fb.extendTo(newTo)
+        def fresh = builder.to(newTo).build()
+        def written = new StringWriter()
+        extended.writeTo(written)
+        def bytes = new ByteArrayOutputStream()
+        extended.extendTo(newTo).writeTo(bytes)
+
+        then:
+        written.toString() == fresh.output()
+        new String(bytes.toByteArray(), UTF_8) == fresh.output()
+        extended.statistics() == fresh.statistics()
+        extended.output() == fresh.output()
+        extended == fresh
+
+        where:
+        builder                                                                          | newTo
+        new FizzBuzz.Builder().from(5).to(100)                                           | 101
+        new FizzBuzz.Builder().to(1000).withOverrideRule(LUCK_RULE).withStatistics()     | 5000
+        new FizzBuzz.Builder().from(7).to(70_000).withOverrideRule(SEVENS).parallel()   | 300_000
+        new FizzBuzz.Builder().to(100).withStatistics().withSharedCache()                | 10_000
+    }
+
+    def "extendTo should chain extensions and render only the new values"() {
+        given:
+        def evaluations = 0
+        Rule counting = [
+                matches: { i -> evaluations++; i % 10 == 7 },
+                result: { "seven" },
+                rule: { { i -> evaluations++; i % 10 == 7 } as java.util.function.IntPredicate }
+        ] as Rule
+        def fb = new FizzBuzz.Builder().to(1000).withOverrideRule(counting).withStatistics().build()
+        fb.output()
+        evaluations = 0
+
+        when:
+        def extended = fb.extendTo(2000).extendTo(2500)
+        def rendered = evaluations
+        def output = extended.output()
+
+        then:
+        rendered == 1000
+        evaluations == 1500
+        output == new FizzBuzz.Builder().to(2500).withOverrideRule(SEVENS).withStatistics().build().output()
+        fb.extendTo(1000).is(fb)
+    }
+
+    def "extendTo should reject a smaller end value"() {
+        when:
+        new FizzBuzz.Builder().to(100).build().extendTo(99)
+
+        then:
+        IllegalArgumentException e = thrown()
+        e.message == 'newTo(99) cannot be smaller than to(100)'
+    }
+}
@@ -0,0 +1,72 @@
+package com.agilesphere
+
+import com.agilesphere.rules.Rule
+import spock.lang.Specification
+
+import static com.agilesphere.rules.Rules.*
+
+class MatchIteratorSpec extends Specification {
+
+    static final Rule SEVEN_RULE = containsDigit(7, 10, 'seven')
+    static final Rule UNTABLED_RULE = divisibleBy(4097, 'big')
+
+    def "should find the same values as filtering every value"() {
+        given:
+        def builder = new FizzBuzz.Builder().from(from).to(to)
+        overrideRules.each { builder.withOverrideRule(it) }
+        def fizzBuzz = builder.build()
+
+        expect:
+        values(fizzBuzz.valuesMatching(rule)) == (from..to).findAll { ruleOf(fizzBuzz, it) == rule.result() }
+
+        where:
+        from   | to     | overrideRules           | rule
+        1      | 1000   | []                      | FIZZ_RULE
+        1      | 1000   | []                      | FIZZBUZZ_RULE
+        1      | 1000   | [LUCK_RULE]             | FIZZ_RULE
+        1      | 1000   | [LUCK_RULE]             | LUCK_RULE
+        29_990 | 40_100 | [LUCK_RULE]             | BUZZ_RULE
+        1      | 2000   | [LUCK_RULE, SEVEN_RULE] | SEVEN_RULE
+        1      | 2000   | [FIZZ_RULE, LUCK_RULE]  | LUCK_RULE
+        1      | 20_000 | [UNTABLED_RULE]         | FIZZ_RULE
+        1      | 20_000 | [UNTABLED_RULE]         | UNTABLED_RULE
+    }
+
+    def "should match every rule producing the result"() {
+        given:
+        def fizzBuzz = new FizzBuzz.Builder().to(100).withOverrideRule(containsDigit(5, 10, 'buzz')).build()
+
+        expect:
+        values(fizzBuzz.valuesProducing('buzz')) == (1..100).findAll { fizzBuzz.tokenAt(it) == 'buzz' }
+        !fizzBuzz.valuesProducing('nothing').hasNext()
+    }
+
+    def "should step over shadowed blocks near the end of the long range"() {
+        given:
+        def fizzBuzz = new FizzBuzz.Builder().from(Long.MAX_VALUE - 1000).to(Long.MAX_VALUE)
+                .withOverrideRule(LUCK_RULE).build()
+
+        expect:
+        values(fizzBuzz.valuesMatching(FIZZ_RULE)) == ((Long.MAX_VALUE - 1000)..<Long.MAX_VALUE).findAll {
+            fizzBuzz.tokenAt(it) == 'fizz'
+        }
+    }
+
+    def "should reject rules that are not in the rule set"() {
+        when:
+        new FizzBuzz.Builder().to(10).build().valuesMatching(LUCK_RULE)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    private static String ruleOf(FizzBuzz fizzBuzz, long value) {
+        fizzBuzz.tokenAt(value)
+    }
+
+    private static List<Long> values(PrimitiveIterator.OfLong iterator) {
+        def values = []
+        while (iterator.hasNext()) values << iterator.nextLong()
+        values
+    }
+}
@@ -0,0 +1,75 @@
+package com.agilesphere
+
+import com.agilesphere.rules.Rule
+import spock.lang.Specification
+
+import static com.agilesphere.rules.Rules.*
+
+class RangeCounterSpec extends Specification {
+
+    static final List<Rule> CORE_RULES = [FIZZBUZZ_RULE, FIZZ_RULE, BUZZ_RULE]
+
+    def "closed form counts should equal counts from classifying every value"() {
+        given:
+        Rule[] rules = (overrides + CORE_RULES) as Rule[]
+
+        when:
+        def counts = RangeCounter.of(rules).count(from, to)
+
+        then:
+        counts as List == scan(rules, from, to)
+
+        where:
+        from  | to     | overrides
+        1     | 1      | []
+        1     | 20     | []
+        7     | 7919   | []
+        1     | 20     | [LUCK_RULE]
+        3     | 3      | [LUCK_RULE]
+        29    | 40031  | [LUCK_RULE]
+        999   | 1001   | [LUCK_RULE]
+        1     | 5000   | [divisibleBy(7, 'bang'), LUCK_RULE]
+        1     | 5000   | [LUCK_RULE, divisibleBy(7, 'bang')]
+        88    | 12345  | [LUCK_RULE, divisibleBy(4, 'four'), FIZZ_RULE]
+    }
+
+    def "closed form counts should cover the whole positive integer range"() {
+        given:
+        Rule[] rules = ([LUCK_RULE] + CORE_RULES) as Rule[]
+
+        when:
+        def counts = RangeCounter.of(rules).count(1, Integer.MAX_VALUE)
+
+        then:
+        counts.sum() == Integer.MAX_VALUE
+    }
+
+    def "should not support rules that cannot be counted in closed form"() {
+        given:
+        def custom = [
+                matches: { i -> i == 8 },
+                result: { "custom" },
+                rule: { i -> i == 8 }
+        ] as Rule
+
+        expect:
+        RangeCounter.of(([custom] + CORE_RULES) as Rule[]) == null
+    }
+
+    def "digit rules in other bases should not be counted in closed form"() {
+        given:
+        Rule[] rules = ([containsDigit(3, 16, 'hex')] + CORE_RULES) as Rule[]
+
+        expect:
+        RangeCounter.of(rules) == null
+    }
+
+    private static List<Long> scan(Rule[] rules, int from, int to) {
+        def counts = new long[rules.length + 1]
+        for (int value = from; value <= to; value++) {
+            def index = rules.findIndexOf { it.matches(value) }
+            counts[index < 0 ? rules.length : index]++
+        }
+        counts as List
+    }
+}
@@ -0,0 +1,48 @@
+package com.agilesphere
+
+import com.agilesphere.rules.LongRule
+import com.agilesphere.rules.Rule
+import spock.lang.Specification
+
+import static com.agilesphere.rules.Rules.*
+
+class RuleEvaluatorSpec extends Specification {
+
+    static final LongRule[] RULES = [containsDigit(3, 10, 'three'), containsDigit(0, 10, 'zero'), divisibleBy(4099, 'prime')]
+
+    def "should return the first matching rule that precedes the winner"() {
+        given:
+        def evaluator = RuleEvaluator.compile(RULES.take(count) as LongRule[], [1, 4, 6].take(count) as int[])
+
+        expect:
+        evaluator.ruleIndex(value, winner) == index
+
+        where:
+        count | value | winner || index
+        3     | 30    | 9      || 1
+        3     | 30    | 1      || 1
+        3     | 30    | 0      || 0
+        3     | 10    | 9      || 4
+        3     | 10    | 4      || 4
+        3     | 8198  | 9      || 6
+        3     | 8198  | 5      || 5
+        3     | 11    | 9      || 9
+        1     | 13    | 9      || 1
+        1     | 10    | 9      || 9
+    }
+
+    def "should propagate exceptions thrown by rules"() {
+        given:
+        def evaluator = RuleEvaluator.compile([RULES[0], asLongRule([
+                matches: { int i -> i == 8 },
+                result: { 'eight' },
+                rule: { int i -> i == 8 }
+        ] as Rule)] as LongRule[], [0, 1] as int[])
+
+        when:
+        evaluator.ruleIndex(1L << 40, 2)
+
+        then:
+        thrown(ArithmeticException)
+    }
+}
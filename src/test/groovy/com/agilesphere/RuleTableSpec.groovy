@@ -0,0 +1,88 @@
+package com.agilesphere
+
+import com.agilesphere.rules.Rule
+import com.agilesphere.utils.DecimalOdometer
+import spock.lang.Specification
+
+import static com.agilesphere.rules.Rules.*
+
+class RuleTableSpec extends Specification {
+
+    static final List<Rule> CORE_RULES = [FIZZBUZZ_RULE, FIZZ_RULE, BUZZ_RULE]
+
+    static final Rule EIGHT = [
+            matches: { i -> i == 8 },
+            result: { "eight" },
+            rule: { i -> i == 8 }
+    ] as Rule
+
+    def "should compile core rules into a cycle of fifteen"() {
+        expect:
+        RuleTable.compile(CORE_RULES as Rule[]).cycle() == 15
+    }
+
+    def "should not table periodic rules that would make the cycle too large"() {
+        expect:
+        RuleTable.compile(([divisibleBy(4099, 'prime')] + CORE_RULES) as Rule[]).cycle() == 15
+    }
+
+    def "table lookup should classify values the same as evaluating rules in order"() {
+        given:
+        Rule[] rules = (overrides + CORE_RULES) as Rule[]
+        def table = RuleTable.compile(rules)
+
+        expect:
+        (1..2000).every { value ->
+            table.ruleIndex(value, table.residueOf(value)) == evaluate(rules, value)
+        }
+
+        where:
+        overrides << [
+                [],
+                [LUCK_RULE],
+                [EIGHT, LUCK_RULE],
+                [divisibleBy(7, 'bang'), LUCK_RULE],
+                [LUCK_RULE, divisibleBy(7, 'bang'), EIGHT],
+                [divisibleBy(4099, 'prime'), EIGHT]
+        ]
+    }
+
+    def "odometer classification should match evaluating rules in order"() {
+        given:
+        Rule[] rules = (overrides + CORE_RULES) as Rule[]
+        def table = RuleTable.compile(rules)
+        def odometer = new DecimalOdometer(1)
+
+        expect:
+        table.classifiesDigits()
+        (1..2000).every { value ->
+            def index = table.ruleIndex(odometer, table.residueOf(value))
+            odometer.increment()
+            index == evaluate(rules, value)
+        }
+
+        where:
+        overrides << [
+                [],
+                [LUCK_RULE],
+                [divisibleBy(7, 'bang'), LUCK_RULE, containsDigit(0, 10, 'zero')]
+        ]
+    }
+
+    def "should not classify digits when a rule is evaluated per value"() {
+        expect:
+        !RuleTable.compile((overrides + CORE_RULES) as Rule[]).classifiesDigits()
+
+        where:
+        overrides << [
+                [EIGHT, LUCK_RULE],
+                [containsDigit(3, 16, 'hex')],
+                [divisibleBy(4099, 'prime')]
+        ]
+    }
+
+    private static int evaluate(Rule[] rules, int value) {
+        def index = rules.findIndexOf { it.matches(value) }
+        index < 0 ? rules.length : index
+    }
+}
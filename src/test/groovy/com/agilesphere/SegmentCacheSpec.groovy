@@ -0,0 +1,64 @@
+package com.agilesphere
+
+import spock.lang.Specification
+
+import static com.agilesphere.SegmentCache.SEGMENT_SIZE
+import static com.agilesphere.rules.Rules.*
+
+class SegmentCacheSpec extends Specification {
+
+    static final RuleSet RULES = new RuleSet([LUCK_RULE, FIZZBUZZ_RULE, FIZZ_RULE, BUZZ_RULE])
+
+    def "should render the same output and statistics as rendering the range directly"() {
+        given:
+        def cache = new SegmentCache(SegmentCache.MAX_BYTES)
+
+        expect:
+        render(cache, from, to) == render(null, from, to)
+
+        where:
+        from             | to
+        1                | 20
+        1                | SEGMENT_SIZE - 1
+        SEGMENT_SIZE - 3 | 3 * SEGMENT_SIZE + 3
+        5                | 2 * SEGMENT_SIZE
+    }
+
+    def "should only cache segments that ranges cover completely"() {
+        given:
+        def cache = new SegmentCache(SegmentCache.MAX_BYTES)
+
+        when:
+        render(cache, 1, 3 * SEGMENT_SIZE - 2)
+        render(cache, SEGMENT_SIZE, 3 * SEGMENT_SIZE - 1)
+
+        then:
+        cache.stats().missCount() == 3
+        cache.stats().hitCount() == 1
+    }
+
+    def "should evict segments to stay within the byte bound"() {
+        given:
+        def cache = new SegmentCache(1_000_000)
+
+        when:
+        render(cache, SEGMENT_SIZE, 20 * SEGMENT_SIZE - 1)
+
+        then:
+        cache.stats().evictionCount() > 0
+        cache.bytes() <= 1_000_000
+    }
+
+    private static List render(SegmentCache cache, long from, long to) {
+        def out = new StringBuilder()
+        def statistics = RULES.newStatistics()
+        def sink = new TokenAppender(RULES.results(), out)
+        if (cache == null) {
+            RULES.render(from, to, sink, statistics)
+        } else {
+            cache.render(RULES, from, to, sink, statistics)
+        }
+        sink.flush()
+        [out.toString(), statistics.format()]
+    }
+}
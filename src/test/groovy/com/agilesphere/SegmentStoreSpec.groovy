@@ -0,0 +1,217 @@
+package com.agilesphere
+
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+import static com.agilesphere.SegmentStore.BLOCK_SIZE
+import static com.agilesphere.rules.Rules.*
+
+class SegmentStoreSpec extends Specification {
+
+    static final int SEGMENT = 4 * BLOCK_SIZE
+    static final RuleSet RULES = new RuleSet([LUCK_RULE, FIZZBUZZ_RULE, FIZZ_RULE, BUZZ_RULE])
+
+    Path directory = Files.createTempDirectory('segments')
+
+    def cleanup() {
+        directory.toFile().deleteDir()
+    }
+
+    def "should render the same output and statistics as rendering the range directly"() {
+        given:
+        def store = new SegmentStore(directory, 1L << 30, SEGMENT)
+
+        expect:
+        render(store, from, to) == render(null, from, to)
+        render(store, from, to) == render(null, from, to)
+
+        cleanup:
+        store.close()
+
+        where:
+        from                | to
+        1                   | 20
+        1                   | SEGMENT - 1
+        SEGMENT - 3         | 3 * SEGMENT + 3
+        5                   | 2 * SEGMENT
+        SEGMENT + 100       | 2 * SEGMENT - 100
+    }
+
+    def "should serve the blocks of stored segments that a range covers"() {
+        given:
+        def store = new SegmentStore(directory, 1L << 30, SEGMENT)
+        render(store, SEGMENT, 3 * SEGMENT - 1)
+
+        expect:
+        render(store, SEGMENT + 10, 3 * SEGMENT - BLOCK_SIZE - 10) == render(null, SEGMENT + 10, 3 * SEGMENT - BLOCK_SIZE - 10)
+        store.stats().missCount() == 2
+        store.stats().hitCount() == 2
+
+        cleanup:
+        store.close()
+    }
+
+    def "should keep stored segments across restarts"() {
+        given:
+        def store = new SegmentStore(directory, 1L << 30, SEGMENT)
+        def expected = render(store, 1, 5 * SEGMENT - 1)
+        def size = store.size()
+        def bytes = store.bytes()
+        store.close()
+
+        when:
+        def reopened = new SegmentStore(directory, 1L << 30, SEGMENT)
+
+        then:
+        reopened.size() == size
+        reopened.bytes() == bytes
+        render(reopened, 1, 5 * SEGMENT - 1) == expected
+        reopened.stats().hitCount() == 5
+        reopened.stats().missCount() == 0
+
+        cleanup:
+        reopened.close()
+    }
+
+    def "should evict the least recently used segments to stay within the byte bound"() {
+        given:
+        def store = new SegmentStore(directory, 1L << 30, SEGMENT)
+        render(store, 1, 6 * SEGMENT - 1)
+        def bytes = store.bytes()
+        store.close()
+
+        when:
+        store = new SegmentStore(directory, bytes - 1, SEGMENT)
+        def evictedOnOpen = store.stats().evictionCount()
+        render(store, 1, SEGMENT - 1)
+
+        then:
+        evictedOnOpen == 1
+        store.size() == 5
+        store.bytes() < bytes
+        store.stats().evictionCount() == 2
+        store.stats().missCount() == 1
+        directory.toFile().listFiles().count { it.name.endsWith('.segment') } == 5
+        render(store, 2 * SEGMENT, 6 * SEGMENT - 1) == render(null, 2 * SEGMENT, 6 * SEGMENT - 1)
+        store.stats().hitCount() == 4
+
+        cleanup:
+        store.close()
+    }
+
+    def "should evict the least recently read segment while running"() {
+        given:
+        def measure = new SegmentStore(directory.resolve('measure'), 1L << 30, SEGMENT)
+        render(measure, 1, 3 * SEGMENT - 1)
+        def threeSegments = measure.bytes()
+        measure.close()
+        def store = new SegmentStore(directory.resolve('store'), threeSegments + threeSegments.intdiv(10), SEGMENT)
+        render(store, 1, 3 * SEGMENT - 1)
+
+        when:
+        render(store, 1, SEGMENT - 1)
+        render(store, 3 * SEGMENT, 4 * SEGMENT - 1)
+
+        then:
+        store.size() == 3
+        store.stats().evictionCount() == 1
+        render(store, 1, SEGMENT - 1) == render(null, 1, SEGMENT - 1)
+        store.stats().hitCount() == 2
+        render(store, SEGMENT, 2 * SEGMENT - 1) == render(null, SEGMENT, 2 * SEGMENT - 1)
+        store.stats().missCount() == 5
+
+        cleanup:
+        store.close()
+    }
+
+    def "should compact the journal while reads are recorded"() {
+        given:
+        def store = new SegmentStore(directory, 1L << 30, SEGMENT)
+        render(store, 1, 2 * SEGMENT - 1)
+
+        when:
+        3000.times { render(store, 1, SEGMENT - 1) }
+
+        then:
+        Files.size(directory.resolve('segments.journal')) <= (2 * 2 + 1024 + 1) * 33
+        render(store, 1, 2 * SEGMENT - 1) == render(null, 1, 2 * SEGMENT - 1)
+
+        cleanup:
+        store.close()
+    }
+
+    def "should compact the journal and delete unrecorded files when opened"() {
+        given:
+        def store = new SegmentStore(directory, 1L << 30, SEGMENT)
+        render(store, 1, 2 * SEGMENT - 1)
+        store.close()
+        def journal = directory.resolve('segments.journal')
+        def touch = Files.readAllBytes(journal)[0..<33] as byte[]
+        touch[0] = (byte) 'T'
+        2000.times { Files.write(journal, touch, java.nio.file.StandardOpenOption.APPEND) }
+        Files.write(directory.resolve('orphan.segment'), [1, 2, 3] as byte[])
+
+        when:
+        def reopened = new SegmentStore(directory, 1L << 30, SEGMENT)
+
+        then:
+        Files.size(journal) == 2 * 33
+        !Files.exists(directory.resolve('orphan.segment'))
+        reopened.size() == 2
+        render(reopened, 1, 2 * SEGMENT - 1) == render(null, 1, 2 * SEGMENT - 1)
+
+        cleanup:
+        reopened.close()
+    }
+
+    def "should key segments by the rules"() {
+        given:
+        def store = new SegmentStore(directory, 1L << 30, SEGMENT)
+        def other = new RuleSet([containsDigit(3, 10, 'three'), FIZZBUZZ_RULE, FIZZ_RULE, BUZZ_RULE])
+
+        when:
+        render(store, 1, SEGMENT - 1)
+        def output = render(store, other, 1, SEGMENT - 1)
+
+        then:
+        output == render(null, other, 1, SEGMENT - 1)
+        store.size() == 2
+
+        cleanup:
+        store.close()
+    }
+
+    def "FizzBuzz instances with a segment store should produce the same output"() {
+        given:
+        def builder = new FizzBuzz.Builder().from(3).to(3_000_000).withOverrideRule(LUCK_RULE).withStatistics()
+        def expected = builder.build().output()
+
+        expect:
+        builder.withSegmentStore(directory).build().output() == expected
+        builder.withSegmentStore(directory).build().output() == expected
+        builder.withSegmentStore(directory).parallel().build().extendTo(3_000_001).output() ==
+                builder.to(3_000_001).build().output()
+
+        cleanup:
+        SegmentStore.shared(directory, 1).close()
+    }
+
+    private static List render(SegmentStore store, long from, long to) {
+        render(store, RULES, from, to)
+    }
+
+    private static List render(SegmentStore store, RuleSet rules, long from, long to) {
+        def out = new StringBuilder()
+        def statistics = rules.newStatistics()
+        def sink = new TokenAppender(rules.results(), out)
+        if (store == null) {
+            rules.render(from, to, sink, statistics)
+        } else {
+            store.render(rules, from, to, sink, statistics)
+        }
+        sink.flush()
+        [out.toString(), statistics.format()]
+    }
+}
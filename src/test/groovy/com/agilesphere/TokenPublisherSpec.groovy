@@ -0,0 +1,100 @@
+package com.agilesphere
+
+import spock.lang.Specification
+
+class TokenPublisherSpec extends Specification {
+
+    static final FizzBuzz FIZZ_BUZZ = new FizzBuzz.Builder().from(1).to(15).build()
+
+    def "should deliver no more tokens than requested"() {
+        given:
+        def subscriber = new RecordingSubscriber()
+        FIZZ_BUZZ.publisher().subscribe(subscriber)
+
+        when:
+        subscriber.subscription.request(3)
+
+        then:
+        subscriber.items == ['1', '2', 'fizz']
+        !subscriber.completed
+
+        when:
+        subscriber.subscription.request(20)
+
+        then:
+        subscriber.items.join(' ') == FIZZ_BUZZ.output()
+        subscriber.completed
+    }
+
+    def "should add requests made while delivering to the demand without recursing"() {
+        given:
+        def subscriber = new RecordingSubscriber(requestOnNext: true)
+        FIZZ_BUZZ.publisher().subscribe(subscriber)
+
+        when:
+        subscriber.subscription.request(1)
+
+        then:
+        subscriber.items.join(' ') == FIZZ_BUZZ.output()
+        subscriber.maxDepth == 1
+        subscriber.completed
+    }
+
+    def "should stop delivering once cancelled"() {
+        given:
+        def subscriber = new RecordingSubscriber()
+        FIZZ_BUZZ.publisher().subscribe(subscriber)
+
+        when:
+        subscriber.subscription.request(2)
+        subscriber.subscription.cancel()
+        subscriber.subscription.request(5)
+
+        then:
+        subscriber.items == ['1', '2']
+        !subscriber.completed
+    }
+
+    def "should fail the subscription when a request is not positive"() {
+        given:
+        def subscriber = new RecordingSubscriber()
+        FIZZ_BUZZ.publisher().subscribe(subscriber)
+
+        when:
+        subscriber.subscription.request(0)
+
+        then:
+        subscriber.error instanceof IllegalArgumentException
+        subscriber.error.message == 'Request must be positive - n(0)'
+    }
+
+    static class RecordingSubscriber implements Flow.Subscriber<CharSequence> {
+
+        Flow.Subscription subscription
+        List<String> items = []
+        boolean completed
+        Throwable error
+        boolean requestOnNext
+        int depth
+        int maxDepth
+
+        void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription
+        }
+
+        void onNext(CharSequence item) {
+            maxDepth = Math.max(maxDepth, ++depth)
+            items << item.toString()
+            if (requestOnNext) subscription.request(1)
+            depth--
+        }
+
+        void onError(Throwable throwable) {
+            error = throwable
+        }
+
+        void onComplete() {
+            completed = true
+        }
+    }
+}
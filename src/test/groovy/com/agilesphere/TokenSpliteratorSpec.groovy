@@ -0,0 +1,85 @@
+package com.agilesphere
+
+import spock.lang.Specification
+
+import java.util.stream.Collectors
+
+import static com.agilesphere.rules.Rules.*
+import static java.util.Spliterator.*
+
+class TokenSpliteratorSpec extends Specification {
+
+    static final RuleSet RULES = new RuleSet([LUCK_RULE, FIZZBUZZ_RULE, FIZZ_RULE, BUZZ_RULE])
+
+    def "should stream the same tokens as the output"() {
+        given:
+        def fizzBuzz = new FizzBuzz.Builder().from(from).to(to).withOverrideRule(LUCK_RULE).build()
+
+        expect:
+        fizzBuzz.tokens().collect(Collectors.joining(' ')) == fizzBuzz.output()
+        fizzBuzz.tokens().parallel().collect(Collectors.joining(' ')) == fizzBuzz.output()
+
+        where:
+        from                 | to
+        1                    | 1
+        1                    | 20
+        7                    | 10_007
+        Long.MAX_VALUE - 100 | Long.MAX_VALUE
+    }
+
+    def "should index rules in order of precedence with numbers as the rule count"() {
+        given:
+        def fizzBuzz = new FizzBuzz.Builder().from(1).to(15).withOverrideRule(LUCK_RULE).build()
+
+        expect:
+        fizzBuzz.ruleIndices().toArray() == [4, 4, 0, 4, 3, 2, 4, 4, 2, 3, 4, 2, 0, 4, 1] as int[]
+        fizzBuzz.ruleIndices().parallel().toArray() == fizzBuzz.ruleIndices().toArray()
+    }
+
+    def "should report sized, subsized, ordered and immutable characteristics"() {
+        given:
+        def spliterator = RULES.spliterator(1, 100)
+
+        expect:
+        spliterator.hasCharacteristics(SIZED | SUBSIZED | ORDERED | IMMUTABLE)
+        spliterator.tokens().hasCharacteristics(SIZED | SUBSIZED | ORDERED | IMMUTABLE)
+        spliterator.exactSizeIfKnown == 100
+    }
+
+    def "should split evenly at the midpoint of the remaining range"() {
+        given:
+        def suffix = RULES.spliterator(from, to)
+
+        when:
+        def prefix = suffix.trySplit()
+
+        then:
+        prefix.estimateSize() == prefixSize
+        suffix.estimateSize() == suffixSize
+
+        where:
+        from                | to             || prefixSize | suffixSize
+        1                   | 100            || 50         | 50
+        1                   | 101            || 50         | 51
+        1                   | Long.MAX_VALUE || (Long.MAX_VALUE >>> 1) | Long.MAX_VALUE - (Long.MAX_VALUE >>> 1)
+    }
+
+    def "should not split a single value"() {
+        expect:
+        RULES.spliterator(5, 5).trySplit() == null
+    }
+
+    def "should classify split halves from their own start values"() {
+        given:
+        def suffix = RULES.spliterator(1, 101)
+        def prefix = suffix.trySplit().trySplit()
+        def indices = []
+
+        when:
+        prefix.forEachRemaining({ int index -> indices << index } as java.util.function.IntConsumer)
+        suffix.tryAdvance({ int index -> indices << index } as java.util.function.IntConsumer)
+
+        then:
+        indices == ((1..25) + [51]).collect { RULES.ruleIndex(it) }
+    }
+}
@@ -30,4 +30,81 @@ class RulesSpec extends Specification {
         output == 'luck'
     }
 
+    def "divisibleBy should match any positive number that is divisible by the divisor"() {
+        expect:
+        Rules.divisibleBy(7, 'bang').matches(input) == result
+
+        where:
+        input || result
+        7     || true
+        49    || true
+        700   || true
+        1     || false
+        8     || false
+        71    || false
+    }
+
+    def "divisibleBy should reject a divisor that is not positive"() {
+        when:
+        Rules.divisibleBy(0, 'never')
+
+        then:
+        IllegalArgumentException e = thrown()
+        e.message == 'Divisor must be positive - divisor(0)'
+    }
+
+    def "containsDigit should match any positive number that contains the digit in the base"() {
+        expect:
+        Rules.containsDigit(digit, base, 'found').matches(input) == result
+
+        where:
+        digit | base | input                || result
+        0     | 10   | 10                   || true
+        0     | 10   | 100001               || true
+        0     | 10   | 123456789            || false
+        0     | 10   | 0                    || false
+        7     | 10   | 70000000000L         || true
+        7     | 10   | Long.MAX_VALUE       || true
+        1     | 10   | Long.MAX_VALUE       || false
+        1     | 2    | 0                    || false
+        0     | 2    | 255                  || false
+        0     | 2    | 256                  || true
+        15    | 16   | 0xF0000              || true
+        15    | 16   | 0xE0000              || false
+        3     | 10   | -3                   || false
+    }
+
+    def "containsDigit should agree with the digits of the value in the base"() {
+        given:
+        def rule = Rules.containsDigit(digit, base, 'found')
+        def expected = { long value -> value > 0 && Long.toString(value, base).contains(Character.forDigit(digit, base) as String) }
+
+        expect:
+        (from..(from + 20000)).every { long value -> rule.matches(value) == expected(value) }
+        (0..20000).every { int value -> rule.matches(value) == expected(value) }
+
+        where:
+        digit | base | from
+        3     | 10   | Integer.MAX_VALUE - 10000L
+        0     | 10   | 9_999_999_999_999_990L
+        0     | 3    | Long.MAX_VALUE - 20001
+        9     | 36   | 1L << 40
+    }
+
+    def "containsDigit should reject a digit outside the base"() {
+        when:
+        Rules.containsDigit(digit, base, 'never')
+
+        then:
+        IllegalArgumentException e = thrown()
+        e.message == message
+
+        where:
+        digit | base || message
+        10    | 10   || 'Digit must be between 0 and 9 - digit(10)'
+        -1    | 2    || 'Digit must be between 0 and 1 - digit(-1)'
+        0     | 1    || 'Base must be between 2 and 36 - base(1)'
+        0     | 37   || 'Base must be between 2 and 36 - base(37)'
+    }
+
 }
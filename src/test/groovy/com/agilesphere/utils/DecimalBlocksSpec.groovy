@@ -0,0 +1,53 @@
+package com.agilesphere.utils
+
+import spock.lang.Specification
+
+class DecimalBlocksSpec extends Specification {
+
+    def "should find the next value containing the digit"() {
+        expect:
+        (from..(from + 2000)).every { long value ->
+            DecimalBlocks.nextContaining(value, digit) == ((value..(value + 2000)).find { (it as String).contains(digit as String) } as long)
+        }
+
+        where:
+        from   | digit
+        1L     | 0
+        1L     | 3
+        1L     | 9
+        88888L | 9
+        99000L | 0
+    }
+
+    def "should find the next value without the digit"() {
+        expect:
+        (from..(from + 2000)).every { long value ->
+            DecimalBlocks.nextWithout(value, digit) == ((value..(value + 30000)).find { !(it as String).contains(digit as String) } as long)
+        }
+
+        where:
+        from    | digit
+        1L      | 0
+        1L      | 3
+        1L      | 9
+        33000L  | 3
+        999000L | 9
+    }
+
+    def "should return zero when no such value fits in a long"() {
+        expect:
+        DecimalBlocks.nextContaining(Long.MAX_VALUE, 1) == 0
+        DecimalBlocks.nextContaining(9_223_372_036_854_775_800L, 1) == 9_223_372_036_854_775_801L
+        DecimalBlocks.nextWithout(Long.MAX_VALUE, 2) == 0
+        DecimalBlocks.nextWithout(9_000_000_000_000_000_000L, 0) == 9_111_111_111_111_111_111L
+    }
+
+    def "should reject values that are not positive"() {
+        when:
+        DecimalBlocks.contains(0, 3)
+
+        then:
+        def e = thrown(IllegalArgumentException)
+        e.message == 'Value must be positive - value(0)'
+    }
+}
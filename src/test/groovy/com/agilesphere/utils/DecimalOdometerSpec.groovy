@@ -0,0 +1,60 @@
+package com.agilesphere.utils
+
+import spock.lang.Specification
+
+class DecimalOdometerSpec extends Specification {
+
+    def "should show the value it was created with"() {
+        when:
+        def odometer = new DecimalOdometer(value)
+
+        then:
+        odometer.toString() == value as String
+        odometer.length() == (value as String).length()
+
+        where:
+        value << [1L, 9L, 10L, 30303L, Long.MAX_VALUE]
+    }
+
+    def "should increment with carry and keep digit counts"() {
+        given:
+        def odometer = new DecimalOdometer(from)
+
+        expect:
+        (from..(from + 3000)).every { long value ->
+            def text = value as String
+            def matches = odometer.toString() == text && (0..9).every { int digit ->
+                odometer.count(digit) == text.count(digit as String)
+            }
+            odometer.increment()
+            matches
+        }
+
+        where:
+        from << [1L, 98999L, 999_999_999_999_998_000L]
+    }
+
+    def "should copy its digits into an array"() {
+        given:
+        def odometer = new DecimalOdometer(1999)
+        odometer.increment()
+        byte[] bytes = new byte[6]
+
+        when:
+        def length = odometer.copyTo(bytes, 1)
+
+        then:
+        length == 4
+        new String(bytes, 1, length, 'US-ASCII') == '2000'
+        odometer.contains(0) && odometer.contains(2) && !odometer.contains(1)
+    }
+
+    def "should reject a value that is not positive"() {
+        when:
+        new DecimalOdometer(0)
+
+        then:
+        IllegalArgumentException e = thrown()
+        e.message == 'Value must be positive - value(0)'
+    }
+}
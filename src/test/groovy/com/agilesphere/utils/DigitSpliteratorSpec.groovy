@@ -40,4 +40,15 @@ class DigitSpliteratorSpec extends Specification {
         10111  || 5
         0      || 1
     }
+
+    def "should traverse digits of long number from least significant"() {
+        given:
+        def digits = []
+
+        when:
+        DigitSpliterator.base10Spliterator(9223372036854775807L).forEachRemaining({ int d -> digits << d } as java.util.function.IntConsumer)
+
+        then:
+        digits == [7, 0, 8, 5, 7, 7, 4, 5, 8, 6, 3, 0, 2, 7, 3, 3, 2, 2, 9]
+    }
 }
@@ -0,0 +1,190 @@
+package com.agilesphere;
+
+import com.google.common.base.Strings;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static com.agilesphere.rules.Rules.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class BinaryFormatTests {
+
+    @Test
+    public void should_decode_to_the_exact_output_with_core_rules() throws IOException {
+        // Given
+        FizzBuzz fizzBuzz = new FizzBuzz.Builder().from(7).to(100_000).withStatistics().build();
+
+        // When
+        String decoded = decode(encode(fizzBuzz));
+
+        // Then
+        assertThat(decoded, is(fizzBuzz.output()));
+    }
+
+    @Test
+    public void should_decode_to_the_exact_output_with_override_rules() throws IOException {
+        // Given
+        FizzBuzz fizzBuzz = new FizzBuzz.Builder().from(1).to(100_000)
+                .withOverrideRule(LUCK_RULE)
+                .withOverrideRule(divisibleBy(4097, "big"))
+                .withStatistics()
+                .build();
+
+        // When
+        String decoded = decode(encode(fizzBuzz));
+
+        // Then
+        assertThat(decoded, is(fizzBuzz.output()));
+    }
+
+    @Test
+    public void should_decode_to_the_exact_output_with_more_rules_than_fit_in_a_byte() throws IOException {
+        // Given 300 rules, so that rule indices take 9 bits in the cycle table
+        FizzBuzz.Builder builder = new FizzBuzz.Builder().from(1).to(20_000).withStatistics();
+        for (int i = 0; i < 300; i++) {
+            builder.withOverrideRule(divisibleBy(7 + i % 2, "rule" + i));
+        }
+        FizzBuzz fizzBuzz = builder.build();
+
+        // When
+        String decoded = decode(encode(fizzBuzz));
+
+        // Then
+        assertThat(decoded, is(fizzBuzz.output()));
+    }
+
+    @Test
+    public void should_decode_results_longer_than_a_modified_utf8_string_allows() throws IOException {
+        // Given
+        FizzBuzz fizzBuzz = new FizzBuzz.Builder().from(1).to(10_000)
+                .withOverrideRule(divisibleBy(4097, Strings.repeat("big", 30_000)))
+                .build();
+
+        // When
+        String decoded = decode(encode(fizzBuzz));
+
+        // Then
+        assertThat(decoded, is(fizzBuzz.output()));
+    }
+
+    @Test
+    public void should_decode_ranges_ending_at_the_largest_long() throws IOException {
+        // Given
+        FizzBuzz fizzBuzz = new FizzBuzz.Builder().from(Long.MAX_VALUE - 1000).to(Long.MAX_VALUE)
+                .withOverrideRule(containsDigit(7, 10, "seven"))
+                .build();
+
+        // When
+        String decoded = decode(encode(fizzBuzz));
+
+        // Then
+        assertThat(decoded, is(fizzBuzz.output()));
+    }
+
+    @Test
+    public void encoding_with_core_rules_should_not_grow_with_the_range() throws IOException {
+        // Given
+        FizzBuzz small = new FizzBuzz.Builder().to(100).build();
+        FizzBuzz large = new FizzBuzz.Builder().to(1_000_000_000_000L).build();
+
+        // When
+        byte[] smallEncoding = encode(small);
+        byte[] largeEncoding = encode(large);
+
+        // Then
+        assertThat(largeEncoding.length, is(smallEncoding.length));
+        assertTrue(smallEncoding.length < 64);
+    }
+
+    @Test
+    public void encoding_should_be_over_a_hundred_times_smaller_than_the_output() throws IOException {
+        // Given
+        FizzBuzz fizzBuzz = new FizzBuzz.Builder().to(100_000).build();
+
+        // When
+        byte[] encoding = encode(fizzBuzz);
+
+        // Then
+        assertTrue(encoding.length * 100 < fizzBuzz.output().getBytes(UTF_8).length);
+    }
+
+    @Test(expected = IOException.class)
+    public void should_reject_input_that_is_not_an_encoding() throws IOException {
+        decode("1 2 fizz".getBytes(UTF_8));
+    }
+
+    @Test
+    public void should_decode_an_encoding_with_no_rules() throws IOException {
+        // Given no rules, a cycle of one and no runs
+        byte[] encoding = encoding(1, 3, 0, 1, 0, 0);
+
+        // When
+        String decoded = decode(encoding);
+
+        // Then
+        assertThat(decoded, is("1 2 3"));
+    }
+
+    @Test(expected = IOException.class)
+    public void should_reject_an_encoding_with_a_cycle_of_zero() throws IOException {
+        decode(encoding(1, 10, 0, 0, 0));
+    }
+
+    @Test(expected = IOException.class)
+    public void should_reject_an_encoding_that_ends_before_it_starts() throws IOException {
+        decode(encoding(10, 1, 0, 1, 0, 0));
+    }
+
+    @Test(expected = IOException.class)
+    public void should_reject_an_encoding_with_a_huge_rule_count() throws IOException {
+        decode(encoding(1, 10, 0x80, 0x80, 0x80, 0x80, 0x08));
+    }
+
+    @Test(expected = IOException.class)
+    public void should_reject_a_winner_that_is_not_a_rule() throws IOException {
+        decode(encoding(1, 10, 0, 1, 1, 0));
+    }
+
+    @Test(expected = IOException.class)
+    public void should_reject_a_run_of_a_rule_that_does_not_exist() throws IOException {
+        decode(encoding(1, 10, 0, 1, 0, 2, 0, 5));
+    }
+
+    @Test(expected = IOException.class)
+    public void should_reject_a_run_past_the_end_of_the_range() throws IOException {
+        decode(encoding(1, 10, 0, 1, 0, 20, 0, 0));
+    }
+
+    private static byte[] encode(FizzBuzz fizzBuzz) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        fizzBuzz.writeBinaryTo(out);
+        return out.toByteArray();
+    }
+
+    private static byte[] encoding(long from, long to, int... rest) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(BinaryFormat.MAGIC);
+        data.writeByte(BinaryFormat.VERSION);
+        data.writeLong(from);
+        data.writeLong(to);
+        data.writeBoolean(false);
+        for (int b : rest) {
+            data.writeByte(b);
+        }
+        data.flush();
+        return out.toByteArray();
+    }
+
+    private static String decode(byte[] encoding) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        FizzBuzz.decodeBinary(new ByteArrayInputStream(encoding), out);
+        return new String(out.toByteArray(), UTF_8);
+    }
+}
@@ -0,0 +1,126 @@
+package com.agilesphere;
+
+import com.agilesphere.rules.Rule;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntPredicate;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.*;
+
+public class FizzBuzzConcurrencyTests {
+
+    private static final int THREADS = 64;
+    private static final int VALUES = 200_000;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+    @After
+    public void stopExecutor() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void concurrent_callers_should_share_a_single_rendering_of_the_output() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            // Given
+            CountingRule rule = new CountingRule();
+            FizzBuzz fizzBuzz = new FizzBuzz.Builder().to(VALUES).withOverrideRule(rule).build();
+
+            // When
+            List<String> outputs = callConcurrently(fizzBuzz);
+
+            // Then
+            assertThat(rule.evaluations.get(), is((long) VALUES));
+            for (String output : outputs) {
+                assertThat(output, sameInstance(outputs.get(0)));
+            }
+        }
+    }
+
+    @Test
+    public void a_failed_rendering_should_fail_every_waiting_caller_and_then_be_retried() throws Exception {
+        // Given
+        CountingRule rule = new CountingRule();
+        rule.failing.set(true);
+        FizzBuzz fizzBuzz = new FizzBuzz.Builder().to(VALUES).withOverrideRule(rule).build();
+
+        // When
+        List<Future<String>> futures = submitConcurrently(fizzBuzz);
+
+        // Then
+        for (Future<String> future : futures) {
+            try {
+                future.get();
+                fail("Expected the rendering to fail");
+            } catch (ExecutionException e) {
+                assertThat(e.getCause(), instanceOf(IllegalStateException.class));
+            }
+        }
+
+        // When
+        rule.failing.set(false);
+
+        // Then
+        assertThat(fizzBuzz.output(), is(new FizzBuzz.Builder().to(VALUES).withOverrideRule(rule).build().output()));
+    }
+
+    private List<String> callConcurrently(FizzBuzz fizzBuzz) throws Exception {
+        List<String> outputs = new ArrayList<>();
+        for (Future<String> future : submitConcurrently(fizzBuzz)) {
+            outputs.add(future.get());
+        }
+        return outputs;
+    }
+
+    private List<Future<String>> submitConcurrently(FizzBuzz fizzBuzz) throws InterruptedException {
+        CountDownLatch ready = new CountDownLatch(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(() -> {
+                ready.countDown();
+                start.await();
+                return fizzBuzz.output();
+            }));
+        }
+        ready.await();
+        start.countDown();
+        return futures;
+    }
+
+    private static final class CountingRule implements Rule {
+
+        private final AtomicLong evaluations = new AtomicLong();
+        private final AtomicBoolean failing = new AtomicBoolean();
+
+        @Override
+        public boolean matches(int value) {
+            evaluations.incrementAndGet();
+            if (failing.get() && value == VALUES / 2) throw new IllegalStateException("Rule failed at " + value);
+            return value % 7 == 0;
+        }
+
+        @Override
+        public String result() {
+            return "seven";
+        }
+
+        @Override
+        public IntPredicate rule() {
+            return this::matches;
+        }
+    }
+}
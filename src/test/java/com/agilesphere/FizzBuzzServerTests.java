@@ -0,0 +1,164 @@
+package com.agilesphere;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.agilesphere.rules.Rules.LUCK_RULE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class FizzBuzzServerTests {
+
+    private FizzBuzzServer server;
+
+    @Before
+    public void startServer() throws IOException {
+        server = FizzBuzzServer.start(0, 2);
+    }
+
+    @After
+    public void stopServer() {
+        server.close();
+    }
+
+    @Test
+    public void should_stream_output_as_chunked_response() throws IOException {
+        // When
+        HttpURLConnection connection = get("?from=3&to=200000&luck=true&stats=true");
+
+        // Then
+        assertThat(connection.getResponseCode(), is(200));
+        assertThat(connection.getHeaderField("Transfer-Encoding"), is("chunked"));
+        assertThat(body(connection.getInputStream()), is(new FizzBuzz.Builder().from(3).to(200_000)
+                .withOverrideRule(LUCK_RULE).withStatistics().build().output()));
+    }
+
+    @Test
+    public void should_default_parameters_as_builder_does() throws IOException {
+        // When
+        HttpURLConnection connection = get("");
+
+        // Then
+        assertThat(body(connection.getInputStream()), is(new FizzBuzz.Builder().build().output()));
+    }
+
+    @Test
+    public void should_complete_requests_in_progress_when_closed() throws Exception {
+        // Given a response that has started
+        HttpURLConnection connection = get("?to=3000000");
+        InputStream in = connection.getInputStream();
+        ExecutorService reader = Executors.newSingleThreadExecutor();
+        Future<String> response = reader.submit(() -> body(in));
+
+        // When
+        server.close();
+
+        // Then
+        assertThat(response.get(), is(new FizzBuzz.Builder().to(3_000_000).build().output()));
+        reader.shutdown();
+    }
+
+    @Test
+    public void should_respond_with_bad_request_for_invalid_parameters() throws IOException {
+        // When
+        HttpURLConnection connection = get("?from=10&to=5");
+
+        // Then
+        assertThat(connection.getResponseCode(), is(400));
+        assertThat(body(connection.getErrorStream()), is("from(10) cannot be bigger than to(5)"));
+    }
+
+    @Test
+    public void should_respond_with_bad_request_for_invalid_flags() throws IOException {
+        // When
+        HttpURLConnection connection = get("?luck=yes");
+
+        // Then
+        assertThat(connection.getResponseCode(), is(400));
+        assertThat(body(connection.getErrorStream()), is("luck must be true or false - luck(yes)"));
+    }
+
+    @Test
+    public void should_respond_with_bad_request_for_parameters_that_are_not_numbers() throws IOException {
+        // When
+        HttpURLConnection connection = get("?from=ten");
+
+        // Then
+        assertThat(connection.getResponseCode(), is(400));
+        assertThat(body(connection.getErrorStream()), is("from must be a number - from(ten)"));
+    }
+
+    @Test
+    public void should_respond_with_bad_request_for_ranges_over_the_maximum() throws IOException {
+        // When
+        HttpURLConnection connection = get("?from=2&to=" + (FizzBuzzServer.DEFAULT_MAX_VALUES + 2));
+
+        // Then
+        assertThat(connection.getResponseCode(), is(400));
+        assertThat(body(connection.getErrorStream()),
+                is("Range must be at most 100000000 values - values(100000001)"));
+    }
+
+    @Test
+    public void should_respond_with_service_unavailable_once_threads_and_queue_are_full() throws IOException {
+        // Given both threads blocked writing to clients that do not read, and a full queue
+        List<Socket> clients = new ArrayList<>();
+        try {
+            for (int i = 0; i < 2 + 2 * FizzBuzzServer.QUEUE_PER_THREAD; i++) {
+                Socket client = new Socket("localhost", server.address().getPort());
+                client.getOutputStream().write(("GET " + FizzBuzzServer.PATH + "?to=10000000 HTTP/1.1\r\n"
+                        + "Host: localhost\r\n\r\n").getBytes(UTF_8));
+                clients.add(client);
+            }
+
+            // When
+            int status = 0;
+            for (int attempt = 0; attempt < 10 && status == 0; attempt++) {
+                HttpURLConnection connection = get("?to=10");
+                connection.setReadTimeout(1000);
+                try {
+                    status = connection.getResponseCode();
+                } catch (SocketTimeoutException e) {
+                    // queued behind the blocked requests, which fills the queue if it was not already
+                }
+            }
+
+            // Then
+            assertThat(status, is(503));
+        } finally {
+            for (Socket client : clients) {
+                client.close();
+            }
+        }
+    }
+
+    private HttpURLConnection get(String query) throws IOException {
+        URL url = new URL("http://localhost:" + server.address().getPort() + FizzBuzzServer.PATH + query);
+        return (HttpURLConnection) url.openConnection();
+    }
+
+    private static String body(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+            bytes.write(buffer, 0, read);
+        }
+        in.close();
+        return new String(bytes.toByteArray(), UTF_8);
+    }
+}
@@ -2,16 +2,30 @@ package com.agilesphere;
 
 import com.agilesphere.rules.Rule;
 import org.junit.Test;
-
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.lang.management.ManagementFactory;
 import java.util.function.IntPredicate;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
 
 import static com.agilesphere.FizzBuzz.LINE_SEPARATOR;
 import static com.agilesphere.rules.Rules.LUCK_RULE;
+import static com.agilesphere.rules.Rules.divisibleBy;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.*;
 
 public class FizzBuzzTests {
 
+    @org.junit.Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Test
     public void should_print_number_for_1() {
         // When
@@ -179,4 +193,353 @@ public class FizzBuzzTests {
         assertNotEquals(first, second);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void streamed_output_to_appendable_should_match_output() throws IOException {
+        // Given
+        FizzBuzz fb = new FizzBuzz.Builder().to(5000).withOverrideRule(LUCK_RULE).withStatistics().build();
+        StringBuilder out = new StringBuilder();
+
+        // When
+        fb.writeTo(out);
+
+        // Then
+        assertThat(out.toString(), is(fb.output()));
+    }
+
+    @Test
+    public void streamed_output_to_output_stream_should_match_output_bytes() throws IOException {
+        // Given
+        FizzBuzz fb = new FizzBuzz.Builder().from(7).to(5000).withStatistics().build();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        fb.writeTo(out);
+
+        // Then
+        assertArrayEquals(fb.output().getBytes(UTF_8), out.toByteArray());
+    }
+
+    @Test
+    public void streamed_output_to_channel_should_match_output_bytes() throws IOException {
+        // Given
+        FizzBuzz fb = new FizzBuzz.Builder().to(5000).withOverrideRule(LUCK_RULE).build();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        fb.writeTo(Channels.newChannel(out));
+
+        // Then
+        assertArrayEquals(fb.output().getBytes(UTF_8), out.toByteArray());
+    }
+
+    @Test
+    public void statistics_should_be_calculated_without_output() {
+        // When
+        FizzBuzz fb = new FizzBuzz.Builder().withOverrideRule(LUCK_RULE).build();
+
+        // Then
+        assertThat(fb.statistics(), is(
+                "buzz: 3"
+                        + LINE_SEPARATOR
+                        + "fizz: 4"
+                        + LINE_SEPARATOR
+                        + "fizzbuzz: 1"
+                        + LINE_SEPARATOR
+                        + "luck: 2"
+                        + LINE_SEPARATOR
+                        + "number: 10"));
+    }
+
+    @Test
+    public void statistics_should_combine_rules_with_the_same_result() {
+        // Given
+        IntPredicate EQUALS_7 = i -> i == 7;
+        Rule seven = new Rule() {
+            @Override
+            public boolean matches(int value) {
+                return EQUALS_7.test(value);
+            }
+
+            @Override
+            public String result() {
+                return "fizz";
+            }
+
+            @Override
+            public IntPredicate rule() {
+                return EQUALS_7;
+            }
+        };
+
+        // When
+        FizzBuzz fb = new FizzBuzz.Builder().to(10).withOverrideRule(seven).build();
+
+        // Then
+        assertThat(fb.statistics(), is(
+                "buzz: 2"
+                        + LINE_SEPARATOR
+                        + "fizz: 4"
+                        + LINE_SEPARATOR
+                        + "number: 4"));
+    }
+
+    @Test
+    public void parallel_output_should_match_sequential_output() {
+        // Given
+        FizzBuzz sequential = new FizzBuzz.Builder().from(17).to(300_000).withOverrideRule(LUCK_RULE).withStatistics().build();
+
+        // When
+        FizzBuzz parallel = new FizzBuzz.Builder().from(17).to(300_000).withOverrideRule(LUCK_RULE).withStatistics()
+                .parallelism(4).build();
+
+        // Then
+        assertThat(parallel.output(), is(sequential.output()));
+    }
+
+    @Test
+    public void parallel_streamed_output_should_match_sequential_output_bytes() throws IOException {
+        // Given
+        FizzBuzz sequential = new FizzBuzz.Builder().to(200_000).withStatistics().build();
+        FizzBuzz parallel = new FizzBuzz.Builder().to(200_000).withStatistics().parallelism(3).build();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // When
+        parallel.writeTo(out);
+
+        // Then
+        assertArrayEquals(sequential.output().getBytes(UTF_8), out.toByteArray());
+    }
+
+    @Test
+    public void parallel_statistics_should_match_sequential_statistics() {
+        // Given
+        IntPredicate ENDS_IN_7 = i -> i % 10 == 7;
+        Rule sevens = new Rule() {
+            @Override
+            public boolean matches(int value) {
+                return ENDS_IN_7.test(value);
+            }
+
+            @Override
+            public String result() {
+                return "seven";
+            }
+
+            @Override
+            public IntPredicate rule() {
+                return ENDS_IN_7;
+            }
+        };
+
+        // When
+        FizzBuzz sequential = new FizzBuzz.Builder().to(250_000).withOverrideRule(sevens).build();
+        FizzBuzz parallel = new FizzBuzz.Builder().to(250_000).withOverrideRule(sevens).parallelism(4).build();
+
+        // Then
+        assertThat(parallel.statistics(), is(sequential.statistics()));
+    }
+
+    @Test
+    public void parallel_statistics_should_match_sequential_statistics_over_more_chunks_than_are_in_flight() {
+        // Given a window of four chunks and ten chunks to count
+        Rule sevens = new Rule() {
+            @Override
+            public boolean matches(int value) {
+                return value % 10 == 7;
+            }
+
+            @Override
+            public String result() {
+                return "seven";
+            }
+
+            @Override
+            public IntPredicate rule() {
+                return this::matches;
+            }
+        };
+        long to = 10L * ParallelRenderer.CHUNK_SIZE - 3;
+
+        // When
+        FizzBuzz sequential = new FizzBuzz.Builder().to(to).withOverrideRule(sevens).build();
+        FizzBuzz parallel = new FizzBuzz.Builder().to(to).withOverrideRule(sevens).parallelism(2).build();
+
+        // Then
+        assertThat(parallel.statistics(), is(sequential.statistics()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_throw_illegal_argument_exception_when_parallelism_is_not_positive() {
+        new FizzBuzz.Builder().parallelism(0);
+    }
+
+    @Test
+    public void file_output_should_match_output_bytes() throws IOException {
+        // Given
+        FizzBuzz fb = new FizzBuzz.Builder().from(9).to(2_500_000).withOverrideRule(LUCK_RULE).withStatistics().build();
+        Path path = folder.newFile().toPath();
+
+        // When
+        fb.writeTo(path);
+
+        // Then
+        assertArrayEquals(fb.output().getBytes(UTF_8), Files.readAllBytes(path));
+    }
+
+    @Test
+    public void parallel_file_output_should_match_output_bytes() throws IOException {
+        // Given
+        IntPredicate EQUALS_1000000 = i -> i == 1_000_000;
+        Rule million = new com.agilesphere.rules.Rule() {
+            @Override
+            public boolean matches(int value) {
+                return EQUALS_1000000.test(value);
+            }
+
+            @Override
+            public String result() {
+                return "million";
+            }
+
+            @Override
+            public IntPredicate rule() {
+                return EQUALS_1000000;
+            }
+        };
+        FizzBuzz fb = new FizzBuzz.Builder().to(2_200_000).withOverrideRule(million).withStatistics()
+                .parallelism(4).build();
+        Path path = folder.newFile().toPath();
+
+        // When
+        fb.writeTo(path);
+
+        // Then
+        assertArrayEquals(fb.output().getBytes(UTF_8), Files.readAllBytes(path));
+    }
+
+    @Test
+    public void should_generate_output_for_values_beyond_int_range() {
+        // Given
+        long from = Long.MAX_VALUE - 30;
+        StringBuilder expected = new StringBuilder();
+        for (long value = from; value > 0; value++) {
+            if (value > from) expected.append(' ');
+            if (String.valueOf(value).contains("3")) expected.append("luck");
+            else if (value % 15 == 0) expected.append("fizzbuzz");
+            else if (value % 3 == 0) expected.append("fizz");
+            else if (value % 5 == 0) expected.append("buzz");
+            else expected.append(value);
+        }
+
+        // When
+        FizzBuzz fb = new FizzBuzz.Builder().from(from).to(Long.MAX_VALUE).withOverrideRule(LUCK_RULE).build();
+
+        // Then
+        assertThat(fb.output(), is(expected.toString()));
+    }
+
+    @Test
+    public void should_calculate_statistics_for_the_whole_long_range() {
+        // When
+        FizzBuzz fb = new FizzBuzz.Builder().to(Long.MAX_VALUE).build();
+
+        // Then
+        long fizzBuzz = Long.MAX_VALUE / 15;
+        long fizz = Long.MAX_VALUE / 3 - fizzBuzz;
+        long buzz = Long.MAX_VALUE / 5 - fizzBuzz;
+        assertThat(fb.statistics(), is(
+                "buzz: " + buzz
+                        + LINE_SEPARATOR
+                        + "fizz: " + fizz
+                        + LINE_SEPARATOR
+                        + "fizzbuzz: " + fizzBuzz
+                        + LINE_SEPARATOR
+                        + "number: " + (Long.MAX_VALUE - fizz - buzz - fizzBuzz)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_throw_illegal_argument_exception_when_int_override_rule_used_beyond_int_range() {
+        IntPredicate EQUALS_8 = i -> i == 8;
+        Rule eight = new Rule() {
+            @Override
+            public boolean matches(int value) {
+                return EQUALS_8.test(value);
+            }
+
+            @Override
+            public String result() {
+                return "eight";
+            }
+
+            @Override
+            public IntPredicate rule() {
+                return EQUALS_8;
+            }
+        };
+
+        new FizzBuzz.Builder().to(Integer.MAX_VALUE + 1L).withOverrideRule(eight).build();
+    }
+
+    @Test
+    public void should_reuse_shared_cache_segments_for_overlapping_ranges() throws IOException {
+        // Given
+        Rule bang = divisibleBy(7, "bang");
+        FizzBuzz first = new FizzBuzz.Builder().to(300_000).withOverrideRule(bang).withOverrideRule(LUCK_RULE)
+                .withStatistics().withSharedCache().build();
+        FizzBuzz second = new FizzBuzz.Builder().from(150_000).to(500_000).withOverrideRule(bang).withOverrideRule(LUCK_RULE)
+                .withStatistics().withSharedCache().build();
+
+        // When
+        long hits = FizzBuzz.sharedCacheStats().hitCount();
+        String firstOutput = first.output();
+        ByteArrayOutputStream secondOutput = new ByteArrayOutputStream();
+        second.writeTo(secondOutput);
+
+        // Then
+        assertThat(FizzBuzz.sharedCacheStats().hitCount(), is(hits + 1));
+        assertThat(firstOutput, is(new FizzBuzz.Builder().to(300_000).withOverrideRule(bang).withOverrideRule(LUCK_RULE)
+                .withStatistics().build().output()));
+        assertThat(secondOutput.toString("UTF-8"), is(new FizzBuzz.Builder().from(150_000).to(500_000)
+                .withOverrideRule(bang).withOverrideRule(LUCK_RULE).withStatistics().build().output()));
+    }
+
+    @Test
+    public void should_record_instrumentation_when_enabled() throws Exception {
+        // Given
+        Rule seven = divisibleBy(7, "instrumented");
+        FizzBuzz fb = new FizzBuzz.Builder().to(100).withOverrideRule(seven).withStatistics().withInstrumentation().build();
+        Instrumentation.Snapshot before = Instrumentation.snapshot();
+
+        // When
+        String output = fb.output();
+        fb.statistics();
+
+        // Then
+        Instrumentation.Snapshot after = Instrumentation.snapshot();
+        assertThat(after.getRuleMatches().get("instrumented"), is(14L));
+        assertThat(after.getRuleEvaluations().get("instrumented"), is(100L));
+        assertThat(after.getValues() - before.getValues(), is(100L));
+        assertThat(after.getOutputBytes() - before.getOutputBytes(), is((long) output.getBytes(UTF_8).length));
+        assertThat(after.getGenerationLatency().getCount() - before.getGenerationLatency().getCount(), is(1L));
+        assertThat(after.getStatisticsLatency().getCount() - before.getStatisticsLatency().getCount(), is(1L));
+        assertThat(after.getFormattingLatency().getCount() - before.getFormattingLatency().getCount(), is(2L));
+        assertTrue(after.getValuesPerSecond() > 0);
+
+        ObjectName name = new ObjectName(Instrumentation.OBJECT_NAME);
+        Object latency = ManagementFactory.getPlatformMBeanServer().getAttribute(name, "GenerationLatency");
+        assertTrue((Long) ((CompositeData) latency).get("count") >= 1);
+    }
+
+    @Test
+    public void should_not_record_instrumentation_when_disabled() {
+        // Given
+        FizzBuzz fb = new FizzBuzz.Builder().to(100).withOverrideRule(divisibleBy(7, "uninstrumented")).build();
+
+        // When
+        fb.output();
+
+        // Then
+        assertFalse(Instrumentation.snapshot().getRuleMatches().containsKey("uninstrumented"));
+    }
+
+}
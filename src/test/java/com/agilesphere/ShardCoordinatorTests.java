@@ -0,0 +1,144 @@
+package com.agilesphere;
+
+import com.agilesphere.rules.Rule;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import static com.agilesphere.rules.Rules.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ShardCoordinatorTests {
+
+    private static final List<Rule> RULES = asList(LUCK_RULE, FIZZBUZZ_RULE, FIZZ_RULE, BUZZ_RULE);
+    private static final RuleSet RULE_SET = new RuleSet(RULES);
+    private static final long TO = 200_000;
+
+    @Test
+    public void should_write_shards_from_several_workers_in_range_order() throws IOException {
+        // Given
+        ShardCoordinator coordinator = new ShardCoordinator(RULE_SET, 3, 10_000, 0);
+
+        // When
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Statistics statistics = coordinator.render(7, TO, bytes -> out.write(bytes.array(), bytes.position(), bytes.remaining()));
+
+        // Then
+        assertThat(new String(out.toByteArray(), UTF_8), is(sequential(7, TO)));
+        assertThat(statistics.format(), is(sequentialStatistics(7, TO)));
+    }
+
+    @Test
+    public void should_reassign_the_shard_of_a_failed_worker() throws IOException {
+        // Given
+        ShardCoordinator coordinator = new ShardCoordinator(RULE_SET, 2, 10_000, 3);
+
+        // When
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Statistics statistics = coordinator.render(1, TO, bytes -> out.write(bytes.array(), bytes.position(), bytes.remaining()));
+
+        // Then
+        assertThat(new String(out.toByteArray(), UTF_8), is(sequential(1, TO)));
+        assertThat(statistics.format(), is(sequentialStatistics(1, TO)));
+    }
+
+    @Test
+    public void should_render_with_the_workers_that_connected() throws IOException {
+        // Given
+        ShardCoordinator coordinator = new ShardCoordinator(RULE_SET, 2, 10_000, -1);
+
+        // When
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Statistics statistics = coordinator.render(1, TO, bytes -> out.write(bytes.array(), bytes.position(), bytes.remaining()));
+
+        // Then
+        assertThat(new String(out.toByteArray(), UTF_8), is(sequential(1, TO)));
+        assertThat(statistics.format(), is(sequentialStatistics(1, TO)));
+    }
+
+    @Test(expected = IOException.class)
+    public void should_fail_when_no_worker_connects() throws IOException {
+        new ShardCoordinator(RULE_SET, 1, 10_000, -1).render(1, TO, bytes -> {});
+    }
+
+    @Test(expected = IOException.class)
+    public void should_fail_once_every_worker_has_failed() throws IOException {
+        new ShardCoordinator(RULE_SET, 1, 10_000, 2).render(1, TO, bytes -> {});
+    }
+
+    @Test
+    public void should_stop_serving_workers_when_the_sink_fails() throws InterruptedException {
+        // Given one shard, so that one thread is left waiting for another
+        ShardCoordinator coordinator = new ShardCoordinator(RULE_SET, 2, 10_000, 0);
+
+        // When
+        try {
+            coordinator.render(1, 5_000, bytes -> {
+                throw new IOException("sink failed");
+            });
+            fail("Expected the sink failure");
+        } catch (IOException e) {
+            assertThat(e.getMessage(), is("sink failed"));
+        }
+
+        // Then
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (shardThreads() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(shardThreads(), is(0L));
+    }
+
+    @Test
+    public void distributed_output_should_be_identical_to_sequential_output() {
+        // Given
+        FizzBuzz.Builder builder = new FizzBuzz.Builder().from(3).to(TO).withOverrideRule(LUCK_RULE).withStatistics();
+
+        // When
+        String distributed = builder.distributed(2).build().output();
+
+        // Then
+        assertThat(distributed, is(new FizzBuzz.Builder().from(3).to(TO).withOverrideRule(LUCK_RULE).withStatistics()
+                .build().output()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void should_reject_rules_that_cannot_be_sent_to_workers() {
+        new FizzBuzz.Builder().withOverrideRule(asLongRule(LUCK_RULE)).withOverrideRule(new Rule() {
+            @Override
+            public boolean matches(int value) {
+                return false;
+            }
+
+            @Override
+            public String result() {
+                return "never";
+            }
+
+            @Override
+            public java.util.function.IntPredicate rule() {
+                return value -> false;
+            }
+        }).distributed(2).build();
+    }
+
+    private static long shardThreads() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().startsWith("fizzbuzz-shard-") && thread.isAlive())
+                .count();
+    }
+
+    private static String sequential(long from, long to) {
+        return new FizzBuzz.Builder().from(from).to(to).withOverrideRule(LUCK_RULE).build().output();
+    }
+
+    private static String sequentialStatistics(long from, long to) {
+        return new FizzBuzz.Builder().from(from).to(to).withOverrideRule(LUCK_RULE).build().statistics();
+    }
+}
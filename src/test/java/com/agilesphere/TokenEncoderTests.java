@@ -0,0 +1,101 @@
+package com.agilesphere;
+
+import com.agilesphere.rules.Rule;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+
+import static com.agilesphere.rules.Rules.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.*;
+
+public class TokenEncoderTests {
+
+    private static final Rule[] CORE_RULES = {FIZZBUZZ_RULE, FIZZ_RULE, BUZZ_RULE};
+    private static final String[] RESULTS = {FIZZBUZZ, FIZZ, BUZZ};
+    private static final int VALUES = 1_000_000;
+
+    @Test
+    public void should_encode_rule_results_and_numbers_separated_by_space() throws IOException {
+        // Given
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TokenEncoder encoder = new TokenEncoder(RESULTS, bytes -> {
+            out.write(bytes.array(), bytes.position(), bytes.remaining());
+            bytes.position(bytes.limit());
+        });
+
+        // When
+        encoder.token(3, 1);
+        encoder.token(1, 3);
+        encoder.token(3, 2147483647);
+        encoder.token(0, 15);
+        encoder.flush();
+
+        // Then
+        assertThat(new String(out.toByteArray(), UTF_8), is("1 fizz 2147483647 fizzbuzz"));
+    }
+
+    @Test
+    public void encoding_tokens_should_not_allocate_per_value() throws IOException {
+        // Given
+        RuleTable table = RuleTable.compile(CORE_RULES);
+        TokenEncoder encoder = new TokenEncoder(RESULTS, bytes -> bytes.position(bytes.limit()));
+        for (int i = 0; i < 5; i++) encode(table, encoder);
+
+        // When
+        long before = allocatedBytes();
+        encode(table, encoder);
+        long allocated = allocatedBytes() - before;
+
+        // Then
+        assertTrue("allocated " + allocated + " bytes for " + VALUES + " values", allocated < VALUES / 100);
+    }
+
+    @Test
+    public void streaming_to_output_stream_should_not_allocate_per_value() throws IOException {
+        // Given
+        FizzBuzz small = new FizzBuzz.Builder().to(10).withStatistics().build();
+        FizzBuzz large = new FizzBuzz.Builder().to(VALUES).withStatistics().build();
+        for (int i = 0; i < 5; i++) large.writeTo(DISCARD);
+
+        // When
+        long before = allocatedBytes();
+        small.writeTo(DISCARD);
+        long smallAllocated = allocatedBytes() - before;
+        before = allocatedBytes();
+        large.writeTo(DISCARD);
+        long largeAllocated = allocatedBytes() - before;
+
+        // Then
+        long perValue = largeAllocated - smallAllocated;
+        assertTrue("allocated " + perValue + " extra bytes for " + VALUES + " values", perValue < VALUES / 100);
+    }
+
+    private static void encode(RuleTable table, TokenEncoder encoder) throws IOException {
+        int residue = table.residueOf(1);
+        for (int value = 1; value <= VALUES; value++) {
+            encoder.token(table.ruleIndex(value, residue), value);
+            if (++residue == table.cycle()) residue = 0;
+        }
+        encoder.flush();
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static final OutputStream DISCARD = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+}